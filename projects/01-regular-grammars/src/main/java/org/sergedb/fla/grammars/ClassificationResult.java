@@ -0,0 +1,28 @@
+package org.sergedb.fla.grammars;
+
+/**
+ * Record class representing the outcome of classifying the lines of a file.
+ *
+ * @param lines        Number of lines read
+ * @param accepted     Number of lines accepted by the automaton
+ * @param elapsedNanos Wall-clock time spent classifying, in nanoseconds
+ */
+public record ClassificationResult(long lines, long accepted, long elapsedNanos) {
+
+    /**
+     * Gets the number of lines rejected by the automaton.
+     *
+     * @return The rejected line count
+     */
+    public long rejected() {
+        return lines - accepted;
+    }
+
+    @Override
+    public String toString() {
+        return "Lines: " + lines +
+                "\nAccepted: " + accepted +
+                "\nRejected: " + rejected() +
+                "\nTime: " + elapsedNanos / 1_000_000 + "ms";
+    }
+}
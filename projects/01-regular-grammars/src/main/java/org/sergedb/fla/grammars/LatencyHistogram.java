@@ -0,0 +1,88 @@
+package org.sergedb.fla.grammars;
+
+/**
+ * Log-linear histogram of non-negative durations, for percentile estimates in constant memory.
+ * <p>
+ * Every power of two is split into {@value #SUB_BUCKETS} equal sub-buckets, so a recorded value
+ * is off by at most 1/{@value #SUB_BUCKETS} of its magnitude. Recording is a few bit operations and
+ * an array increment. Instances are not thread-safe; each thread records into its own histogram and
+ * the histograms are merged afterwards.
+ */
+final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private final long[] counts = new long[64 * SUB_BUCKETS];
+    private long total;
+
+    /**
+     * Records a value.
+     *
+     * @param value The value, negative values are recorded as 0
+     */
+    void record(long value) {
+        counts[bucketOf(Math.max(0, value))]++;
+        total++;
+    }
+
+    /**
+     * Adds the counts of another histogram to this one.
+     *
+     * @param other The histogram to merge
+     */
+    void merge(LatencyHistogram other) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        total += other.total;
+    }
+
+    /**
+     * Gets the number of recorded values.
+     *
+     * @return The total count
+     */
+    long count() {
+        return total;
+    }
+
+    /**
+     * Estimates a percentile.
+     *
+     * @param percentile The percentile, between 0 and 100
+     * @return The upper bound of the bucket holding the percentile, or 0 if nothing was recorded
+     */
+    long percentile(double percentile) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return upperBound(i);
+            }
+        }
+        return upperBound(counts.length - 1);
+    }
+
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = bucket % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return (1L << exponent) + (subBucket + 1) * width - 1;
+    }
+}
@@ -0,0 +1,360 @@
+package org.sergedb.fla.grammars;
+
+import org.sergedb.fla.grammars.automaton.CompiledAutomaton;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Classifies every line of a newline-delimited file against a compiled automaton.
+ * <p>
+ * The file is memory-mapped in chunks that end on line boundaries, and the chunks are
+ * processed in parallel. Lines are decoded from UTF-8 and fed to the automaton byte by byte,
+ * so no {@code String} is ever built for a line. Both {@code \n} and {@code \r\n} line endings
+ * are recognized; a final line without a terminator is still counted.
+ * <p>
+ * Optionally, the per-line results are written to a bitmap file where bit {@code i}
+ * (least significant bit first within each byte) is set if line {@code i} is accepted.
+ */
+public class LineClassifier {
+    private static final long DEFAULT_CHUNK_SIZE = 64L << 20;
+    private static final int BOUNDARY_SCAN_SIZE = 8192;
+    private static final int DEAD = CompiledAutomaton.DEAD_STATE;
+    // Smallest code point that may be encoded with a given number of continuation bytes
+    private static final int[] MIN_CODE_POINT = {0, 0x80, 0x800, 0x10000};
+
+    private final CompiledAutomaton automaton;
+    private final long chunkSize;
+
+    /**
+     * Creates a classifier using 64 MiB chunks.
+     *
+     * @param automaton The automaton to classify lines with
+     */
+    public LineClassifier(CompiledAutomaton automaton) {
+        this(automaton, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Creates a classifier using chunks of the given size.
+     *
+     * @param automaton The automaton to classify lines with
+     * @param chunkSize The target chunk size in bytes; chunks are extended to the next line break
+     * @throws IllegalArgumentException If the chunk size is not positive
+     */
+    public LineClassifier(CompiledAutomaton automaton, long chunkSize) {
+        this.automaton = Objects.requireNonNull(automaton, "Automaton cannot be null");
+        if (chunkSize <= 0 || chunkSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Chunk size must be between 1 and " + Integer.MAX_VALUE);
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Counts the accepted and rejected lines of a file.
+     *
+     * @param input The file to classify
+     * @return The line counts
+     * @throws IOException If the file cannot be read
+     */
+    public ClassificationResult classify(Path input) throws IOException {
+        return classify(input, null);
+    }
+
+    /**
+     * Counts the accepted and rejected lines of a file and writes the per-line results as a bitmap.
+     *
+     * @param input  The file to classify
+     * @param bitmap The bitmap file to write, or null to only count
+     * @return The line counts
+     * @throws IOException If the file cannot be read or the bitmap cannot be written
+     */
+    public ClassificationResult classify(Path input, Path bitmap) throws IOException {
+        long startTime = System.nanoTime();
+        long lines = 0;
+        long accepted = 0;
+
+        try (FileChannel channel = FileChannel.open(input, StandardOpenOption.READ);
+             BitmapWriter writer = bitmap != null ? new BitmapWriter(Files.newOutputStream(bitmap)) : null) {
+            List<long[]> chunks = splitIntoChunks(channel);
+
+            // Process a bounded wave of chunks at a time so pending bitmaps do not pile up
+            int waveSize = Math.max(1, Runtime.getRuntime().availableProcessors() * 2);
+            for (int from = 0; from < chunks.size(); from += waveSize) {
+                List<long[]> wave = chunks.subList(from, Math.min(chunks.size(), from + waveSize));
+                List<ChunkResult> results = classifyChunks(channel, wave, writer != null);
+
+                for (ChunkResult result : results) {
+                    lines += result.lines();
+                    accepted += result.accepted();
+                    if (writer != null) {
+                        writer.append(result.words(), result.lines());
+                    }
+                }
+            }
+        }
+
+        return new ClassificationResult(lines, accepted, System.nanoTime() - startTime);
+    }
+
+    /**
+     * Splits the file into [start, end) ranges of roughly the chunk size that end right after a line break.
+     *
+     * @param channel The file channel
+     * @return The chunk ranges in file order
+     * @throws IOException If the file cannot be read
+     */
+    private List<long[]> splitIntoChunks(FileChannel channel) throws IOException {
+        List<long[]> chunks = new ArrayList<>();
+        long size = channel.size();
+        ByteBuffer scan = ByteBuffer.allocate(BOUNDARY_SCAN_SIZE);
+
+        long start = 0;
+        while (start < size) {
+            long end = Math.min(start + chunkSize, size);
+            if (end < size) {
+                end = nextLineStart(channel, end, scan);
+            }
+            if (end - start > Integer.MAX_VALUE) {
+                throw new IOException("Line starting before offset " + end + " is too long to be mapped");
+            }
+            chunks.add(new long[]{start, end});
+            start = end;
+        }
+        return chunks;
+    }
+
+    /**
+     * Finds the offset just after the first line break at or after the given position.
+     *
+     * @param channel  The file channel
+     * @param position The position to start scanning from
+     * @param scan     Scratch buffer for the scan
+     * @return The start of the next line, or the file size if there is none
+     * @throws IOException If the file cannot be read
+     */
+    private long nextLineStart(FileChannel channel, long position, ByteBuffer scan) throws IOException {
+        long size = channel.size();
+        while (position < size) {
+            scan.clear();
+            int read = channel.read(scan, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (scan.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    /**
+     * Classifies a group of chunks in parallel.
+     *
+     * @param channel     The file channel
+     * @param chunks      The chunk ranges
+     * @param keepBitmaps Whether per-line results are needed
+     * @return The chunk results, in the order of the chunks
+     * @throws IOException If a chunk cannot be mapped
+     */
+    private List<ChunkResult> classifyChunks(FileChannel channel, List<long[]> chunks, boolean keepBitmaps) throws IOException {
+        try {
+            return chunks.parallelStream()
+                    .map(range -> {
+                        try {
+                            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, range[0], range[1] - range[0]);
+                            return classifyChunk(buffer, keepBitmaps);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    })
+                    .toList();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Runs the automaton over every line of a mapped chunk.
+     *
+     * @param buffer      The mapped chunk
+     * @param keepBitmaps Whether per-line results are needed
+     * @return The chunk line counts and optional bitmap
+     */
+    private ChunkResult classifyChunk(ByteBuffer buffer, boolean keepBitmaps) {
+        int length = buffer.limit();
+        long[] words = keepBitmaps ? new long[16] : null;
+        int lines = 0;
+        int accepted = 0;
+        int start = automaton.getStartState();
+        int state = start;
+        boolean lineOpen = false;
+
+        int i = 0;
+        while (i < length) {
+            byte b = buffer.get(i);
+
+            if (b == '\n' || (b == '\r' && i + 1 < length && buffer.get(i + 1) == '\n')) {
+                if (automaton.isAccepting(state)) {
+                    accepted++;
+                    if (words != null) {
+                        words = setBit(words, lines);
+                    }
+                }
+                lines++;
+                state = start;
+                lineOpen = false;
+                i += b == '\r' ? 2 : 1;
+                continue;
+            }
+
+            lineOpen = true;
+            if (state == DEAD) {
+                i++;
+                continue;
+            }
+
+            if (b >= 0) {
+                state = automaton.step(state, (char) b);
+                i++;
+                continue;
+            }
+
+            // Multi-byte UTF-8 sequence
+            int lead = b & 0xFF;
+            // 0xC0, 0xC1 and 0xF5 and above can only start overlong or out-of-range sequences
+            int extra = lead >= 0xF5 ? -1 : lead >= 0xF0 ? 3 : lead >= 0xE0 ? 2 : lead >= 0xC2 ? 1 : -1;
+            int codePoint = lead & (0x3F >> Math.max(extra, 0));
+            int j = i + 1;
+            for (int k = 0; k < extra && j < length && (buffer.get(j) & 0xC0) == 0x80; k++, j++) {
+                codePoint = (codePoint << 6) | (buffer.get(j) & 0x3F);
+            }
+            if (extra < 0 || j - i - 1 != extra || codePoint < MIN_CODE_POINT[extra]
+                    || !Character.isValidCodePoint(codePoint)
+                    || (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE)) {
+                // Malformed input, overlong forms and encoded surrogates decode to U+FFFD, which is never a terminal
+                state = DEAD;
+                i = Math.max(j, i + 1);
+                continue;
+            }
+
+            if (Character.isBmpCodePoint(codePoint)) {
+                state = automaton.step(state, (char) codePoint);
+            } else {
+                state = automaton.step(state, Character.highSurrogate(codePoint));
+                if (state != DEAD) {
+                    state = automaton.step(state, Character.lowSurrogate(codePoint));
+                }
+            }
+            i = j;
+        }
+
+        if (lineOpen) {
+            if (automaton.isAccepting(state)) {
+                accepted++;
+                if (words != null) {
+                    words = setBit(words, lines);
+                }
+            }
+            lines++;
+        }
+
+        return new ChunkResult(lines, accepted, words);
+    }
+
+    /**
+     * Sets a bit in a growable bitmap.
+     *
+     * @param words The bitmap words
+     * @param index The bit to set
+     * @return The bitmap, reallocated if it had to grow
+     */
+    private static long[] setBit(long[] words, int index) {
+        int word = index >>> 6;
+        if (word >= words.length) {
+            words = Arrays.copyOf(words, Math.max(words.length * 2, word + 1));
+        }
+        words[word] |= 1L << index;
+        return words;
+    }
+
+    /**
+     * Result of classifying one chunk.
+     *
+     * @param lines    Number of lines in the chunk
+     * @param accepted Number of accepted lines in the chunk
+     * @param words    Bitmap of accepted lines, or null if not requested
+     */
+    private record ChunkResult(int lines, int accepted, long[] words) {
+    }
+
+    /**
+     * Concatenates chunk bitmaps of arbitrary bit lengths into one output stream.
+     */
+    private static final class BitmapWriter implements AutoCloseable {
+        private final OutputStream out;
+        private long pending;
+        private int pendingBits;
+
+        BitmapWriter(OutputStream out) {
+            this.out = new BufferedOutputStream(out, 1 << 16);
+        }
+
+        /**
+         * Appends the first {@code count} bits of a bitmap.
+         *
+         * @param words The bitmap words
+         * @param count Number of bits to append
+         * @throws IOException If the output cannot be written
+         */
+        void append(long[] words, long count) throws IOException {
+            for (int w = 0; count > 0; w++, count -= 64) {
+                long bits = w < words.length ? words[w] : 0L;
+                appendBits(bits, (int) Math.min(64, count));
+            }
+        }
+
+        private void appendBits(long bits, int count) throws IOException {
+            if (count < 64) {
+                bits &= (1L << count) - 1;
+            }
+            pending |= bits << pendingBits;
+            int total = pendingBits + count;
+            if (total >= 64) {
+                writeWord(pending, 64);
+                pending = pendingBits == 0 ? 0L : bits >>> (64 - pendingBits);
+                total -= 64;
+            }
+            pendingBits = total;
+        }
+
+        private void writeWord(long word, int bits) throws IOException {
+            for (int i = 0; i < bits; i += 8) {
+                out.write((int) (word >>> i));
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (pendingBits > 0) {
+                writeWord(pending, pendingBits);
+            }
+            out.close();
+        }
+    }
+}
@@ -2,6 +2,8 @@ package org.sergedb.fla.grammars;
 
 import org.sergedb.fla.grammars.parser.GrammarParser;
 
+import java.nio.file.Path;
+
 /**
  * Main application entry point for the Regular Grammar Processor.
  * Responsible for bootstrapping the application components and starting the execution.
@@ -14,15 +16,35 @@ public class Main {
     public static final String RULES_FILE_PATH = "projects/01-regular-grammars/src/main/resources/rules.txt";
 
     /**
-     * Regular expression pattern for parsing grammar sections
+     * Path of the binary snapshot of the compiled grammar, rebuilt whenever the rules file is newer
+     */
+    public static final String SNAPSHOT_FILE_PATH = "projects/01-regular-grammars/target/rules.fsa";
+
+    /**
+     * Command that switches to classifying the lines of a file instead of the interactive run
+     */
+    public static final String CLASSIFY_COMMAND = "classify";
+
+    /**
+     * Command that traces the rejected lines of a file instead of the interactive run
+     */
+    public static final String TRACE_COMMAND = "trace";
+
+    /**
+     * Command that generates strings and checks them against the automaton, reporting throughput
      */
-    public static final String REGEX_PATTERN = "(?i)%s\\s*=\\s*\\{\\s*((?:[^{}]|[\\r\\n])*)\\s*}";
+    public static final String VALIDATE_COMMAND = "validate";
 
     /**
      * Application entry point.
      * Creates necessary components and executes the grammar processor.
+     * <p>
+     * Usage: {@code classify <input> [bitmap]} classifies every line of the input file;
+     * {@code trace <input> <output>} writes a trace of every rejected line of the input file;
+     * {@code validate <count> [seed]} generates and checks count strings;
+     * without arguments the grammar is processed and tested interactively.
      *
-     * @param args Command line arguments (not used)
+     * @param args Command line arguments
      */
     public static void main(String[] args) {
 
@@ -33,6 +55,14 @@ public class Main {
         Runner runner = new Runner(parser);
 
         // Run the application
-        runner.run();
+        if (args.length >= 2 && args[0].equals(CLASSIFY_COMMAND)) {
+            runner.runClassification(Path.of(args[1]), args.length >= 3 ? Path.of(args[2]) : null);
+        } else if (args.length >= 3 && args[0].equals(TRACE_COMMAND)) {
+            runner.runTracing(Path.of(args[1]), Path.of(args[2]));
+        } else if (args.length >= 2 && args[0].equals(VALIDATE_COMMAND)) {
+            runner.runValidation(Long.parseLong(args[1]), args.length >= 3 ? Long.parseLong(args[2]) : System.nanoTime());
+        } else {
+            runner.run();
+        }
     }
 }
\ No newline at end of file
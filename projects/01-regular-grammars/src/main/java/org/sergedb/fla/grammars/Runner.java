@@ -1,7 +1,10 @@
 package org.sergedb.fla.grammars;
 
+import org.sergedb.fla.grammars.automaton.AutomatonSnapshot;
+import org.sergedb.fla.grammars.automaton.CompiledAutomaton;
 import org.sergedb.fla.grammars.automaton.FiniteAutomaton;
 import org.sergedb.fla.grammars.interactive.StringTester;
+import org.sergedb.fla.grammars.interactive.TraceSummary;
 import org.sergedb.fla.grammars.model.Grammar;
 import org.sergedb.fla.grammars.parser.GrammarParser;
 import org.sergedb.fla.grammars.processor.GrammarProcessor;
@@ -14,6 +17,7 @@ import java.util.List;
 import java.util.Scanner;
 
 import static org.sergedb.fla.grammars.Main.RULES_FILE_PATH;
+import static org.sergedb.fla.grammars.Main.SNAPSHOT_FILE_PATH;
 
 public class Runner {
     private final GrammarParser grammarParser;
@@ -30,11 +34,7 @@ public class Runner {
         try {
             long startTime = System.nanoTime();
 
-            Path path = Path.of(RULES_FILE_PATH);
-            if (!Files.exists(path)) {
-                throw new IOException("No grammar found at: " + path);
-            }
-            grammar = grammarParser.parseFromFile(path);
+            grammar = loadGrammar();
             GrammarProcessor grammarProcessor = new GrammarProcessor(grammar);
 
             System.out.println("--- PARSED GRAMMAR ---");
@@ -84,6 +84,129 @@ public class Runner {
         }
     }
 
+    /**
+     * Classifies every line of a file against the grammar's automaton and prints the counts.
+     * <p>
+     * The automaton comes from the binary snapshot when an up-to-date one exists, so repeated runs
+     * skip parsing the grammar.
+     *
+     * @param input  the newline-delimited file to classify
+     * @param bitmap the file to write the per-line results to, or null to only count
+     */
+    public void runClassification(Path input, Path bitmap) {
+        try {
+            System.out.println("--- CLASSIFYING " + input + " ---");
+            LineClassifier classifier = new LineClassifier(loadCompiledAutomaton());
+            ClassificationResult result = classifier.classify(input, bitmap);
+            System.out.println(result);
+
+            if (bitmap != null) {
+                System.out.println("Bitmap written to: " + bitmap);
+            }
+
+        } catch (IOException e) {
+            System.err.println("Error classifying file: " + e.getMessage());
+        } catch (Exception e) {
+            System.err.println("Unexpected error: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Traces every rejected line of a file against the grammar's automaton and prints the counts.
+     *
+     * @param input  the newline-delimited file to check
+     * @param output the file to write the traces to
+     */
+    public void runTracing(Path input, Path output) {
+        try {
+            grammar = loadGrammar();
+            automaton = new FiniteAutomaton(grammar);
+
+            System.out.println("--- TRACING REJECTIONS IN " + input + " ---");
+            TraceSummary summary = new StringTester(automaton).traceRejected(input, output);
+            System.out.println(summary);
+            System.out.println("Traces written to: " + output);
+
+        } catch (IOException e) {
+            System.err.println("Error tracing file: " + e.getMessage());
+        } catch (Exception e) {
+            System.err.println("Unexpected error: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Generates strings from the grammar in parallel, checks each against the automaton
+     * and prints the throughput, rejection count and check latencies.
+     *
+     * @param count the number of strings to generate
+     * @param seed  the seed of the random generator
+     */
+    public void runValidation(long count, long seed) {
+        try {
+            grammar = loadGrammar();
+            automaton = new FiniteAutomaton(grammar);
+
+            System.out.println("--- VALIDATING " + count + " GENERATED STRINGS (seed " + seed + ") ---");
+            ValidationReport report = new SelfValidation(new GrammarProcessor(grammar), automaton).run(count, seed);
+            System.out.println(report);
+
+        } catch (IOException e) {
+            System.err.println("Error processing grammar file: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Validation interrupted");
+        } catch (Exception e) {
+            System.err.println("Unexpected error: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Loads the minimized automaton of the grammar from its snapshot, rebuilding the snapshot
+     * from the rules file if it is missing, stale or unreadable.
+     *
+     * @return the compiled automaton
+     * @throws IOException if the rules file is missing or cannot be read
+     */
+    private CompiledAutomaton loadCompiledAutomaton() throws IOException {
+        Path rules = Path.of(RULES_FILE_PATH);
+        Path snapshot = Path.of(SNAPSHOT_FILE_PATH);
+        if (Files.exists(snapshot) && Files.exists(rules)
+                && Files.getLastModifiedTime(snapshot).compareTo(Files.getLastModifiedTime(rules)) >= 0) {
+            try {
+                return AutomatonSnapshot.read(snapshot);
+            } catch (IOException e) {
+                System.err.println("Ignoring snapshot: " + e.getMessage());
+            }
+        }
+
+        grammar = loadGrammar();
+        automaton = new FiniteAutomaton(grammar);
+        CompiledAutomaton compiled = automaton.minimize();
+        try {
+            AutomatonSnapshot.write(compiled, snapshot);
+        } catch (IOException e) {
+            System.err.println("Could not write snapshot: " + e.getMessage());
+        }
+        return compiled;
+    }
+
+    /**
+     * Parses the grammar from the rules file.
+     *
+     * @return the parsed grammar
+     * @throws IOException if the rules file is missing or cannot be read
+     */
+    private Grammar loadGrammar() throws IOException {
+        Path path = Path.of(RULES_FILE_PATH);
+        if (!Files.exists(path)) {
+            throw new IOException("No grammar found at: " + path);
+        }
+        return grammarParser.parseFromFile(path);
+    }
+
     /**
      * Generates a specified number of strings using the grammar processor.
      *
@@ -0,0 +1,195 @@
+package org.sergedb.fla.grammars;
+
+import org.sergedb.fla.grammars.automaton.FiniteAutomaton;
+import org.sergedb.fla.grammars.processor.GrammarProcessor;
+
+import java.util.Objects;
+import java.util.SplittableRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Generates strings from a grammar and checks every one of them against the grammar's automaton.
+ * <p>
+ * Producer threads derive strings in batches and hand them to consumer threads through a bounded
+ * queue, so generation and checking overlap and memory stays flat however many strings are
+ * requested. Consumers time every check and record it in a per-thread {@link LatencyHistogram};
+ * the histograms are merged at the end for the percentiles of the report.
+ * <p>
+ * Producers and consumers are awaited together, so the first failure on either side stops
+ * the whole pipeline and is rethrown instead of leaving the other side blocked on the queue.
+ * <p>
+ * Since every string derived from a grammar belongs to its language, any rejection points to a
+ * bug in the parser, the generator or the automaton construction.
+ */
+public class SelfValidation {
+    private static final int BATCH_SIZE = 1024;
+    private static final int BATCHES_PER_CONSUMER = 4;
+    private static final String[] END_OF_INPUT = new String[0];
+    private static final long END_OF_INPUT_WAIT_MILLIS = 10;
+
+    private final GrammarProcessor processor;
+    private final FiniteAutomaton automaton;
+    private final int producers;
+    private final int consumers;
+
+    /**
+     * Creates a pipeline that splits the available processors between producers and consumers.
+     *
+     * @param processor The generator of the strings
+     * @param automaton The automaton to check the strings with
+     */
+    public SelfValidation(GrammarProcessor processor, FiniteAutomaton automaton) {
+        this(processor, automaton,
+                Math.max(1, Runtime.getRuntime().availableProcessors() / 2),
+                Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+    }
+
+    /**
+     * Creates a pipeline with the given number of threads.
+     *
+     * @param processor The generator of the strings
+     * @param automaton The automaton to check the strings with
+     * @param producers The number of generating threads
+     * @param consumers The number of checking threads
+     * @throws IllegalArgumentException If a thread count is not positive
+     */
+    public SelfValidation(GrammarProcessor processor, FiniteAutomaton automaton, int producers, int consumers) {
+        this.processor = Objects.requireNonNull(processor, "Processor cannot be null");
+        this.automaton = Objects.requireNonNull(automaton, "Automaton cannot be null");
+        if (producers <= 0 || consumers <= 0) {
+            throw new IllegalArgumentException("Thread counts must be positive");
+        }
+        this.producers = producers;
+        this.consumers = consumers;
+    }
+
+    /**
+     * Generates and checks the given number of strings.
+     *
+     * @param count The number of strings to generate
+     * @param seed  The seed of the random generator
+     * @return The counts, throughput and check latencies of the run
+     * @throws IllegalArgumentException If count is negative
+     * @throws IllegalStateException    If a string cannot be generated
+     * @throws InterruptedException     If the calling thread is interrupted while waiting
+     */
+    public ValidationReport run(long count, long seed) throws InterruptedException {
+        if (count < 0) {
+            throw new IllegalArgumentException("Count cannot be negative");
+        }
+
+        long start = System.nanoTime();
+        BlockingQueue<String[]> queue = new ArrayBlockingQueue<>(BATCHES_PER_CONSUMER * consumers);
+        AtomicLong remaining = new AtomicLong(count);
+        SplittableRandom root = new SplittableRandom(seed);
+
+        ExecutorService executor = Executors.newFixedThreadPool(producers + consumers);
+        try {
+            // Producers complete with null, consumers with their tally
+            CompletionService<Tally> tasks = new ExecutorCompletionService<>(executor);
+            for (int i = 0; i < producers; i++) {
+                Supplier<String> generator = processor.generator(root.split());
+                tasks.submit(() -> {
+                    produce(generator, remaining, queue);
+                    return null;
+                });
+            }
+            for (int i = 0; i < consumers; i++) {
+                tasks.submit(() -> consume(queue));
+            }
+
+            Tally total = new Tally();
+            int producing = producers;
+            int released = 0;
+            for (int pending = producers + consumers; pending > 0; ) {
+                Future<Tally> done;
+                if (producing == 0 && released < consumers) {
+                    // Hand out the end markers without blocking, so a consumer failing meanwhile is still seen
+                    if (queue.offer(END_OF_INPUT, END_OF_INPUT_WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+                        released++;
+                    }
+                    done = tasks.poll();
+                } else {
+                    done = tasks.take();
+                }
+                if (done == null) {
+                    continue;
+                }
+
+                pending--;
+                Tally tally = done.get();
+                if (tally == null) {
+                    producing--;
+                } else {
+                    total.merge(tally);
+                }
+            }
+
+            return new ValidationReport(total.latencies.count(), total.rejected, System.nanoTime() - start,
+                    total.latencies.percentile(50), total.latencies.percentile(99));
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException("Validation failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void produce(Supplier<String> generator, AtomicLong remaining, BlockingQueue<String[]> queue)
+            throws InterruptedException {
+        while (true) {
+            long claimed = remaining.getAndAdd(-BATCH_SIZE);
+            if (claimed <= 0) {
+                return;
+            }
+            String[] batch = new String[(int) Math.min(BATCH_SIZE, claimed)];
+            for (int i = 0; i < batch.length; i++) {
+                batch[i] = generator.get();
+            }
+            queue.put(batch);
+        }
+    }
+
+    private Tally consume(BlockingQueue<String[]> queue) throws InterruptedException {
+        Tally tally = new Tally();
+        while (true) {
+            String[] batch = queue.take();
+            if (batch == END_OF_INPUT) {
+                return tally;
+            }
+            for (String str : batch) {
+                long before = System.nanoTime();
+                boolean accepted = automaton.accepts(str);
+                tally.latencies.record(System.nanoTime() - before);
+                if (!accepted) {
+                    tally.rejected++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Results of one consumer thread.
+     */
+    private static final class Tally {
+        private final LatencyHistogram latencies = new LatencyHistogram();
+        private long rejected;
+
+        void merge(Tally other) {
+            latencies.merge(other.latencies);
+            rejected += other.rejected;
+        }
+    }
+}
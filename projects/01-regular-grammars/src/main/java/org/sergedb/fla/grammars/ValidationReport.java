@@ -0,0 +1,31 @@
+package org.sergedb.fla.grammars;
+
+/**
+ * Record class representing the outcome of a generate-and-verify run.
+ *
+ * @param generated    Number of strings generated and checked
+ * @param rejected     Number of generated strings the automaton rejected
+ * @param elapsedNanos Wall-clock time of the run, in nanoseconds
+ * @param p50Nanos     Median time to check one string, in nanoseconds
+ * @param p99Nanos     99th percentile of the time to check one string, in nanoseconds
+ */
+public record ValidationReport(long generated, long rejected, long elapsedNanos, long p50Nanos, long p99Nanos) {
+
+    /**
+     * Gets the throughput of the run.
+     *
+     * @return Strings generated and checked per second
+     */
+    public double stringsPerSecond() {
+        return elapsedNanos == 0 ? 0 : generated * 1_000_000_000.0 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "Generated: " + generated +
+                "\nRejected: " + rejected +
+                "\nTime: " + elapsedNanos / 1_000_000 + "ms" +
+                String.format("%nThroughput: %.0f strings/s", stringsPerSecond()) +
+                "\nCheck latency p50: " + p50Nanos + "ns, p99: " + p99Nanos + "ns";
+    }
+}
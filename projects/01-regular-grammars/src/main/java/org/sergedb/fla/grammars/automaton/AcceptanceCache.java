@@ -0,0 +1,41 @@
+package org.sergedb.fla.grammars.automaton;
+
+import java.util.function.Predicate;
+
+/**
+ * A cache of acceptance results that {@link FiniteAutomaton#accepts(String)} consults before running the automaton.
+ * <p>
+ * Implementations must be safe to call from several threads at once.
+ */
+public interface AcceptanceCache {
+
+    /**
+     * Returns the cached result for the input, computing and storing it on a miss.
+     *
+     * @param input    The input string
+     * @param acceptor Computes the acceptance result on a miss
+     * @return True if the input is accepted, false otherwise
+     */
+    boolean computeIfAbsent(String input, Predicate<String> acceptor);
+
+    /**
+     * Removes every cached result. Statistics are not reset.
+     */
+    void clear();
+
+    /**
+     * Gets a snapshot of the cache statistics.
+     *
+     * @return The hit, miss and eviction counters and the current size
+     */
+    CacheStats stats();
+
+    /**
+     * Gets a cache that stores nothing and delegates every call to the acceptor.
+     *
+     * @return The no-op cache
+     */
+    static AcceptanceCache disabled() {
+        return NoAcceptanceCache.INSTANCE;
+    }
+}
@@ -0,0 +1,156 @@
+package org.sergedb.fla.grammars.automaton;
+
+import java.nio.CharBuffer;
+
+/**
+ * Resumable position in a {@link CompiledAutomaton}, fed with input one piece at a time.
+ * <p>
+ * The cursor starts at q0 and keeps only the current state, so inputs of any size can be
+ * classified in constant memory as they arrive. Once the dead state is reached no input can
+ * lead to acceptance anymore and further input is skipped without being examined.
+ * <p>
+ * A cursor is not thread-safe; create one per input stream.
+ */
+public final class AcceptanceCursor {
+    private final CompiledAutomaton automaton;
+    private int state;
+    private long length;
+
+    /**
+     * Creates a cursor positioned at the start state of the automaton.
+     *
+     * @param automaton The automaton to run
+     */
+    AcceptanceCursor(CompiledAutomaton automaton) {
+        this.automaton = automaton;
+        this.state = automaton.getStartState();
+    }
+
+    /**
+     * Consumes a single character.
+     *
+     * @param c The input character
+     * @return This cursor
+     */
+    public AcceptanceCursor feed(char c) {
+        length++;
+        if (state != CompiledAutomaton.DEAD_STATE) {
+            state = automaton.step(state, c);
+        }
+        return this;
+    }
+
+    /**
+     * Consumes a sequence of characters.
+     *
+     * @param chunk The input characters
+     * @return This cursor
+     */
+    public AcceptanceCursor feed(CharSequence chunk) {
+        int n = chunk.length();
+        length += n;
+        for (int i = 0; i < n && state != CompiledAutomaton.DEAD_STATE; i++) {
+            state = automaton.step(state, chunk.charAt(i));
+        }
+        return this;
+    }
+
+    /**
+     * Consumes a range of a character array.
+     *
+     * @param chunk  The array holding the input
+     * @param offset Index of the first character to consume
+     * @param count  Number of characters to consume
+     * @return This cursor
+     * @throws IndexOutOfBoundsException If the range is outside the array
+     */
+    public AcceptanceCursor feed(char[] chunk, int offset, int count) {
+        if (offset < 0 || count < 0 || offset > chunk.length - count) {
+            throw new IndexOutOfBoundsException("Range [" + offset + ", " + offset + " + " + count + ") out of bounds for length " + chunk.length);
+        }
+
+        length += count;
+        for (int i = offset, end = offset + count; i < end && state != CompiledAutomaton.DEAD_STATE; i++) {
+            state = automaton.step(state, chunk[i]);
+        }
+        return this;
+    }
+
+    /**
+     * Consumes all remaining characters of a buffer, leaving its position at its limit.
+     *
+     * @param chunk The buffer holding the input
+     * @return This cursor
+     */
+    public AcceptanceCursor feed(CharBuffer chunk) {
+        int count = chunk.remaining();
+        if (chunk.hasArray()) {
+            feed(chunk.array(), chunk.arrayOffset() + chunk.position(), count);
+        } else {
+            length += count;
+            for (int i = chunk.position(), end = chunk.limit(); i < end && state != CompiledAutomaton.DEAD_STATE; i++) {
+                state = automaton.step(state, chunk.get(i));
+            }
+        }
+        chunk.position(chunk.limit());
+        return this;
+    }
+
+    /**
+     * Checks whether the input consumed so far is accepted.
+     *
+     * @return True if the cursor is in a final state
+     */
+    public boolean isAccepting() {
+        return automaton.isAccepting(state);
+    }
+
+    /**
+     * Checks whether the cursor has reached the dead state.
+     * <p>
+     * A dead cursor rejects the input consumed so far and every possible continuation of it.
+     * Trap states are folded into the dead state when the table is compiled, so the cursor
+     * becomes dead on the first character after which no final state can be reached.
+     *
+     * @return True if no continuation can be accepted
+     */
+    public boolean isDead() {
+        return state == CompiledAutomaton.DEAD_STATE;
+    }
+
+    /**
+     * Gets the current state id.
+     *
+     * @return The current state
+     */
+    public int getState() {
+        return state;
+    }
+
+    /**
+     * Gets the number of characters consumed since the last reset.
+     *
+     * @return The input length
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * Moves the cursor back to the start state.
+     *
+     * @return This cursor
+     */
+    public AcceptanceCursor reset() {
+        state = automaton.getStartState();
+        length = 0;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "AcceptanceCursor[state=" + automaton.getStateName(state) +
+                ", length=" + length +
+                ", accepting=" + isAccepting() + "]";
+    }
+}
@@ -0,0 +1,294 @@
+package org.sergedb.fla.grammars.automaton;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Checks whether inputs are within a number of edits of a string accepted by a {@link CompiledAutomaton}.
+ * <p>
+ * An edit is the insertion, deletion or substitution of one character (Levenshtein distance).
+ * The matcher simulates the product of the automaton with a Levenshtein automaton: for every
+ * error level e from 0 to k it keeps, as a bitset, the automaton states reachable by aligning the
+ * input read so far with at most e edits. Each input character advances all k + 1 levels at once:
+ * <pre>
+ * R'[0] = δ(R[0], c)
+ * R'[e] = δ(R[e], c) ∪ R[e-1] ∪ δ(R[e-1], Σ) ∪ δ(R'[e-1], Σ) ∪ R'[e-1]
+ * </pre>
+ * covering a match, a deleted input character, a substitution and an inserted character respectively.
+ * States that cannot reach a final state are masked out, and the simulation stops as soon as every
+ * level is empty. The work per character is proportional to k times the number of active states,
+ * instead of the size of the k-edit neighbourhood of the input.
+ * <p>
+ * Instances are immutable and can be shared between threads.
+ */
+public final class ApproximateMatcher {
+    private final CompiledAutomaton automaton;
+    private final int stateCount;
+    private final int symbolCount;
+    private final int words;
+    private final boolean[] live;
+
+    /**
+     * Creates a matcher for the given automaton.
+     *
+     * @param automaton The automaton whose language the inputs are compared with
+     */
+    public ApproximateMatcher(CompiledAutomaton automaton) {
+        this.automaton = Objects.requireNonNull(automaton, "Automaton cannot be null");
+        this.stateCount = automaton.getStateCount();
+        this.symbolCount = automaton.getSymbolCount();
+        this.words = (stateCount + 63) >>> 6;
+        this.live = automaton.liveStates();
+    }
+
+    /**
+     * Checks whether the input is within the given number of edits of an accepted string.
+     *
+     * @param input    The input to check
+     * @param maxEdits The maximum number of edits
+     * @return True if some accepted string is at most maxEdits edits away
+     * @throws IllegalArgumentException if maxEdits is negative
+     */
+    public boolean accepts(CharSequence input, int maxEdits) {
+        return distance(input, maxEdits) >= 0;
+    }
+
+    /**
+     * Computes the edit distance from the input to the closest accepted string, up to a bound.
+     *
+     * @param input    The input to check
+     * @param maxEdits The maximum number of edits to consider
+     * @return The minimal number of edits, or -1 if it exceeds maxEdits
+     * @throws IllegalArgumentException if maxEdits is negative
+     */
+    public int distance(CharSequence input, int maxEdits) {
+        Objects.requireNonNull(input, "Input cannot be null");
+        if (maxEdits < 0) {
+            throw new IllegalArgumentException("Maximum number of edits cannot be negative");
+        }
+
+        long[][] current = new long[maxEdits + 1][words];
+        long[][] next = new long[maxEdits + 1][words];
+
+        int start = automaton.getStartState();
+        if (live[start]) {
+            current[0][start >>> 6] = 1L << start;
+        }
+        for (int e = 1; e <= maxEdits; e++) {
+            System.arraycopy(current[e - 1], 0, current[e], 0, words);
+            stepAll(current[e - 1], current[e]);
+        }
+
+        for (int i = 0, n = input.length(); i < n; i++) {
+            int symbol = automaton.symbolOf(input.charAt(i));
+            boolean any = false;
+            for (int e = 0; e <= maxEdits; e++) {
+                long[] level = next[e];
+                Arrays.fill(level, 0L);
+                if (symbol >= 0) {
+                    step(current[e], symbol, level);
+                }
+                if (e > 0) {
+                    or(current[e - 1], level);
+                    stepAll(current[e - 1], level);
+                    or(next[e - 1], level);
+                    stepAll(next[e - 1], level);
+                }
+                any |= !isEmpty(level);
+            }
+            if (!any) {
+                return -1;
+            }
+
+            long[][] swap = current;
+            current = next;
+            next = swap;
+        }
+
+        for (int e = 0; e <= maxEdits; e++) {
+            if (containsAccepting(current[e])) {
+                return e;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Finds an accepted string with the minimal edit distance to the input.
+     * <p>
+     * Runs a shortest-path search over (input position, state) pairs, with one bucket per number
+     * of edits, and rebuilds the string from the parent of each visited pair. Among the strings at
+     * minimal distance, one that is found first is returned.
+     *
+     * @param input    The input to correct
+     * @param maxEdits The maximum number of edits to consider
+     * @return The nearest accepted string, or empty if none is within maxEdits edits
+     * @throws IllegalArgumentException if maxEdits is negative
+     */
+    public Optional<String> nearest(CharSequence input, int maxEdits) {
+        Objects.requireNonNull(input, "Input cannot be null");
+        if (maxEdits < 0) {
+            throw new IllegalArgumentException("Maximum number of edits cannot be negative");
+        }
+        int start = automaton.getStartState();
+        if (!live[start]) {
+            return Optional.empty();
+        }
+
+        int n = input.length();
+        int nodes = Math.multiplyExact(n + 1, stateCount);
+        int[] distance = new int[nodes];
+        int[] parent = new int[nodes];
+        char[] emitted = new char[nodes];
+        boolean[] emits = new boolean[nodes];
+        Arrays.fill(distance, Integer.MAX_VALUE);
+
+        Buckets buckets = new Buckets(maxEdits + 1);
+        distance[start] = 0;
+        parent[start] = -1;
+        buckets.push(0, start);
+
+        for (int d = 0; d <= maxEdits; d++) {
+            while (!buckets.isEmpty(d)) {
+                int node = buckets.pop(d);
+                if (distance[node] != d) {
+                    continue;
+                }
+                int position = node / stateCount;
+                int state = node % stateCount;
+                if (position == n && automaton.isAccepting(state)) {
+                    return Optional.of(rebuild(node, parent, emitted, emits));
+                }
+
+                int inputSymbol = position < n ? automaton.symbolOf(input.charAt(position)) : -1;
+                if (inputSymbol >= 0) {
+                    // Match
+                    int target = automaton.transition(state, inputSymbol);
+                    relax(node, (position + 1) * stateCount + target, d, target, input.charAt(position),
+                            true, distance, parent, emitted, emits, buckets);
+                }
+                if (d == maxEdits) {
+                    continue;
+                }
+                if (position < n) {
+                    // Delete the input character
+                    relax(node, (position + 1) * stateCount + state, d + 1, state, '\0',
+                            false, distance, parent, emitted, emits, buckets);
+                }
+                for (int symbol = 0; symbol < symbolCount; symbol++) {
+                    int target = automaton.transition(state, symbol);
+                    char c = automaton.getSymbol(symbol);
+                    // Insert a character
+                    relax(node, position * stateCount + target, d + 1, target, c,
+                            true, distance, parent, emitted, emits, buckets);
+                    if (position < n && symbol != inputSymbol) {
+                        // Substitute the input character
+                        relax(node, (position + 1) * stateCount + target, d + 1, target, c,
+                                true, distance, parent, emitted, emits, buckets);
+                    }
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    private void relax(int from, int to, int d, int targetState, char c, boolean emit,
+                       int[] distance, int[] parent, char[] emitted, boolean[] emits, Buckets buckets) {
+        if (!live[targetState] || distance[to] <= d) {
+            return;
+        }
+        distance[to] = d;
+        parent[to] = from;
+        emitted[to] = c;
+        emits[to] = emit;
+        buckets.push(d, to);
+    }
+
+    private static String rebuild(int node, int[] parent, char[] emitted, boolean[] emits) {
+        StringBuilder result = new StringBuilder();
+        for (int current = node; parent[current] >= 0; current = parent[current]) {
+            if (emits[current]) {
+                result.append(emitted[current]);
+            }
+        }
+        return result.reverse().toString();
+    }
+
+    /**
+     * Adds the successors of the states in {@code from} on a symbol to {@code to}.
+     */
+    private void step(long[] from, int symbol, long[] to) {
+        for (int w = 0; w < words; w++) {
+            for (long bits = from[w]; bits != 0; bits &= bits - 1) {
+                int target = automaton.transition((w << 6) + Long.numberOfTrailingZeros(bits), symbol);
+                if (live[target]) {
+                    to[target >>> 6] |= 1L << target;
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the successors of the states in {@code from} on any symbol to {@code to}.
+     */
+    private void stepAll(long[] from, long[] to) {
+        for (int symbol = 0; symbol < symbolCount; symbol++) {
+            step(from, symbol, to);
+        }
+    }
+
+    private void or(long[] from, long[] to) {
+        for (int w = 0; w < words; w++) {
+            to[w] |= from[w];
+        }
+    }
+
+    private boolean isEmpty(long[] set) {
+        for (long word : set) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean containsAccepting(long[] set) {
+        for (int w = 0; w < words; w++) {
+            for (long bits = set[w]; bits != 0; bits &= bits - 1) {
+                if (automaton.isAccepting((w << 6) + Long.numberOfTrailingZeros(bits))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * One growable stack of search nodes per number of edits.
+     */
+    private static final class Buckets {
+        private final int[][] nodes;
+        private final int[] sizes;
+
+        Buckets(int count) {
+            nodes = new int[count][16];
+            sizes = new int[count];
+        }
+
+        void push(int bucket, int node) {
+            if (sizes[bucket] == nodes[bucket].length) {
+                nodes[bucket] = Arrays.copyOf(nodes[bucket], sizes[bucket] * 2);
+            }
+            nodes[bucket][sizes[bucket]++] = node;
+        }
+
+        int pop(int bucket) {
+            return nodes[bucket][--sizes[bucket]];
+        }
+
+        boolean isEmpty(int bucket) {
+            return sizes[bucket] == 0;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package org.sergedb.fla.grammars.automaton;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.zip.CRC32;
+
+/**
+ * Reads and writes {@link CompiledAutomaton} instances in a compact binary format.
+ * <p>
+ * Loading a snapshot skips grammar parsing and automaton construction entirely: the file is
+ * mapped into memory with a single call and the tables are copied out with bulk reads.
+ * <p>
+ * All values are big-endian. The file starts with a fixed header
+ * <pre>
+ * int magic      'F' 'L' 'A' 'S'
+ * int version    {@value #VERSION}
+ * int length     payload size in bytes
+ * int checksum   CRC-32 of the payload
+ * </pre>
+ * followed by the payload
+ * <pre>
+ * int    stateCount, symbolCount, startState
+ * char   symbols[symbolCount]
+ * int    transitions[stateCount * symbolCount]
+ * long   accepting[(stateCount + 63) / 64]     bitset, bit i set if state i is final
+ * per state: int nameLength, byte name[nameLength] (UTF-8)
+ * </pre>
+ */
+public final class AutomatonSnapshot {
+    private static final int MAGIC = 0x464C4153;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 4 * Integer.BYTES;
+
+    private AutomatonSnapshot() {
+    }
+
+    /**
+     * Writes a snapshot of the automaton.
+     * <p>
+     * The file is written next to its destination first and then moved in place, so a concurrent
+     * reader never sees a partially written snapshot.
+     *
+     * @param automaton The automaton to write
+     * @param path      The destination file
+     * @throws IOException If the file cannot be written
+     */
+    public static void write(CompiledAutomaton automaton, Path path) throws IOException {
+        Objects.requireNonNull(automaton, "Automaton cannot be null");
+        Objects.requireNonNull(path, "Path cannot be null");
+
+        int stateCount = automaton.getStateCount();
+        int symbolCount = automaton.getSymbolCount();
+        byte[][] names = new byte[stateCount][];
+        long namesSize = 0;
+        for (int state = 0; state < stateCount; state++) {
+            names[state] = automaton.getStateName(state).getBytes(StandardCharsets.UTF_8);
+            namesSize += Integer.BYTES + names[state].length;
+        }
+
+        long payloadSize = 3L * Integer.BYTES
+                + (long) symbolCount * Character.BYTES
+                + (long) stateCount * symbolCount * Integer.BYTES
+                + (long) bitsetWords(stateCount) * Long.BYTES
+                + namesSize;
+        if (HEADER_SIZE + payloadSize > Integer.MAX_VALUE) {
+            throw new IOException("Automaton too large for a snapshot: " + stateCount + " states");
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + (int) payloadSize);
+        buffer.position(HEADER_SIZE);
+        buffer.putInt(stateCount).putInt(symbolCount).putInt(automaton.getStartState());
+        for (int symbol = 0; symbol < symbolCount; symbol++) {
+            buffer.putChar(automaton.getSymbol(symbol));
+        }
+        for (int state = 0; state < stateCount; state++) {
+            for (int symbol = 0; symbol < symbolCount; symbol++) {
+                buffer.putInt(automaton.transition(state, symbol));
+            }
+        }
+        long[] accepting = new long[bitsetWords(stateCount)];
+        for (int state = 0; state < stateCount; state++) {
+            if (automaton.isAccepting(state)) {
+                accepting[state >>> 6] |= 1L << state;
+            }
+        }
+        for (long word : accepting) {
+            buffer.putLong(word);
+        }
+        for (byte[] name : names) {
+            buffer.putInt(name.length).put(name);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), HEADER_SIZE, (int) payloadSize);
+        buffer.putInt(0, MAGIC)
+                .putInt(4, VERSION)
+                .putInt(8, (int) payloadSize)
+                .putInt(12, (int) crc.getValue());
+
+        Path directory = path.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temporary = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temporary, buffer.array());
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Reads a snapshot written by {@link #write(CompiledAutomaton, Path)}.
+     *
+     * @param path The snapshot file
+     * @return The automaton stored in the snapshot
+     * @throws IOException If the file cannot be read, has an unsupported version or fails its checksum
+     */
+    public static CompiledAutomaton read(Path path) throws IOException {
+        Objects.requireNonNull(path, "Path cannot be null");
+
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                throw new IOException("Not an automaton snapshot: " + path);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+
+        if (buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not an automaton snapshot: " + path);
+        }
+        int version = buffer.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported snapshot version " + version + " in " + path);
+        }
+        int payloadSize = buffer.getInt(8);
+        if (payloadSize != buffer.capacity() - HEADER_SIZE) {
+            throw new IOException("Truncated automaton snapshot: " + path);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(HEADER_SIZE, payloadSize));
+        if ((int) crc.getValue() != buffer.getInt(12)) {
+            throw new IOException("Checksum mismatch in automaton snapshot: " + path);
+        }
+
+        try {
+            buffer.position(HEADER_SIZE);
+            int stateCount = buffer.getInt();
+            int symbolCount = buffer.getInt();
+            int startState = buffer.getInt();
+
+            char[] symbols = new char[symbolCount];
+            buffer.asCharBuffer().get(symbols);
+            buffer.position(buffer.position() + symbolCount * Character.BYTES);
+
+            int[] transitions = new int[Math.multiplyExact(stateCount, symbolCount)];
+            buffer.asIntBuffer().get(transitions);
+            buffer.position(buffer.position() + transitions.length * Integer.BYTES);
+
+            long[] acceptingWords = new long[bitsetWords(stateCount)];
+            buffer.asLongBuffer().get(acceptingWords);
+            buffer.position(buffer.position() + acceptingWords.length * Long.BYTES);
+            boolean[] accepting = new boolean[stateCount];
+            for (int state = 0; state < stateCount; state++) {
+                accepting[state] = (acceptingWords[state >>> 6] & (1L << state)) != 0;
+            }
+
+            String[] stateNames = new String[stateCount];
+            for (int state = 0; state < stateCount; state++) {
+                byte[] name = new byte[buffer.getInt()];
+                buffer.get(name);
+                stateNames[state] = new String(name, StandardCharsets.UTF_8);
+            }
+
+            return new CompiledAutomaton(stateNames, symbols, transitions, accepting, startState);
+        } catch (RuntimeException e) {
+            // A payload that passes the checksum but does not describe a valid automaton
+            throw new IOException("Malformed automaton snapshot: " + path, e);
+        }
+    }
+
+    private static int bitsetWords(int stateCount) {
+        return (stateCount + 63) >>> 6;
+    }
+}
@@ -0,0 +1,58 @@
+package org.sergedb.fla.grammars.automaton;
+
+import java.io.Serial;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Fork-join task that checks a range of inputs against a compiled automaton.
+ * <p>
+ * Ranges are split on 64-element boundaries so that every leaf owns whole words of the
+ * result bitmap and can write them without synchronization.
+ */
+final class BatchAcceptTask extends RecursiveAction {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Inputs per leaf task; large enough to amortize task overhead over short strings.
+     */
+    static final int LEAF_SIZE = 4096;
+
+    private final transient CompiledAutomaton automaton;
+    private final String[] inputs;
+    private final long[] words;
+    private final int from;
+    private final int to;
+
+    BatchAcceptTask(CompiledAutomaton automaton, String[] inputs, long[] words, int from, int to) {
+        this.automaton = automaton;
+        this.inputs = inputs;
+        this.words = words;
+        this.from = from;
+        this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+        if (to - from <= LEAF_SIZE) {
+            acceptRange();
+            return;
+        }
+
+        int middle = ((from + to) >>> 1) & ~63;
+        invokeAll(new BatchAcceptTask(automaton, inputs, words, from, middle),
+                new BatchAcceptTask(automaton, inputs, words, middle, to));
+    }
+
+    /**
+     * Checks every input of the range, packing the results into bitmap words.
+     */
+    private void acceptRange() {
+        for (int i = from; i < to; i++) {
+            String input = inputs[i];
+            if (input != null && automaton.accepts(input)) {
+                words[i >>> 6] |= 1L << i;
+            }
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package org.sergedb.fla.grammars.automaton;
+
+/**
+ * Record class representing a point-in-time snapshot of {@link AcceptanceCache} counters.
+ *
+ * @param hitCount      Number of lookups answered from the cache
+ * @param missCount     Number of lookups that had to run the automaton
+ * @param evictionCount Number of entries removed to respect the size bound
+ * @param size          Number of entries currently held
+ */
+public record CacheStats(long hitCount, long missCount, long evictionCount, long size) {
+
+    /**
+     * Gets the fraction of lookups answered from the cache.
+     *
+     * @return The hit rate in [0, 1], or 0 if there were no lookups
+     */
+    public double hitRate() {
+        long requests = hitCount + missCount;
+        return requests == 0 ? 0.0 : (double) hitCount / requests;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("hits=%d, misses=%d, evictions=%d, size=%d, hitRate=%.2f%%",
+                hitCount, missCount, evictionCount, size, hitRate() * 100);
+    }
+}
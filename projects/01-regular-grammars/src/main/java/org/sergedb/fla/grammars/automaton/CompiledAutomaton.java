@@ -0,0 +1,502 @@
+package org.sergedb.fla.grammars.automaton;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Immutable, table-driven form of a deterministic finite automaton.
+ * <p>
+ * States are dense integers and input characters are mapped to symbol indices through
+ * a char-indexed lookup array, so a transition is a single array read:
+ * <pre>
+ * next = transitions[state * symbolCount + symbolIndex[c]]
+ * </pre>
+ * State {@link #DEAD_STATE} is a non-accepting sink that every missing transition leads to.
+ * Its row in the table is all zeros, which means a freshly allocated table is already "all dead".
+ * Transitions into trap states, from which no final state can be reached, are redirected to it
+ * on construction, so reaching the dead state is exactly the point where no continuation can be accepted.
+ * <p>
+ * Instances never change after construction and can be shared freely between threads.
+ */
+public final class CompiledAutomaton {
+    /**
+     * The non-accepting sink state reached by any undefined transition.
+     */
+    public static final int DEAD_STATE = 0;
+
+    private static final int NO_SYMBOL = -1;
+
+    private final String[] stateNames;
+    private final char[] symbols;
+    private final int[] symbolIndex;
+    private final int[] transitions;
+    private final boolean[] accepting;
+    private final int startState;
+    private final int symbolCount;
+
+    /**
+     * Creates a compiled automaton from its raw tables.
+     *
+     * @param stateNames  Display name of every state, indexed by state id ({@code stateNames[0]} is the dead state)
+     * @param symbols     The input symbols, indexed by symbol id
+     * @param transitions Flat transition table of size {@code stateNames.length * symbols.length};
+     *                    transitions into trap states are redirected to the dead state in place
+     * @param accepting   Acceptance flag of every state, indexed by state id
+     * @param startState  The id of the start state
+     * @throws IllegalArgumentException If the tables are inconsistent
+     */
+    CompiledAutomaton(String[] stateNames, char[] symbols, int[] transitions, boolean[] accepting, int startState) {
+        Objects.requireNonNull(stateNames, "State names cannot be null");
+        Objects.requireNonNull(symbols, "Symbols cannot be null");
+        Objects.requireNonNull(transitions, "Transitions cannot be null");
+        Objects.requireNonNull(accepting, "Accepting flags cannot be null");
+
+        int stateCount = stateNames.length;
+        if (stateCount == 0 || accepting.length != stateCount) {
+            throw new IllegalArgumentException("Accepting flags must cover every state, including the dead state");
+        }
+        if (transitions.length != stateCount * symbols.length) {
+            throw new IllegalArgumentException("Transition table must have exactly one entry per (state, symbol) pair");
+        }
+        if (startState < 0 || startState >= stateCount) {
+            throw new IllegalArgumentException("Start state out of range: " + startState);
+        }
+        for (int target : transitions) {
+            if (target < 0 || target >= stateCount) {
+                throw new IllegalArgumentException("Transition target out of range: " + target);
+            }
+        }
+
+        boolean[] live = liveStates(transitions, accepting, symbols.length);
+        for (int i = 0; i < transitions.length; i++) {
+            if (!live[transitions[i]]) {
+                transitions[i] = DEAD_STATE;
+            }
+        }
+
+        this.stateNames = stateNames;
+        this.symbols = symbols;
+        this.transitions = transitions;
+        this.accepting = accepting;
+        this.startState = live[startState] ? startState : DEAD_STATE;
+        this.symbolCount = symbols.length;
+        this.symbolIndex = buildSymbolIndex(symbols);
+    }
+
+    /**
+     * Builds the char-indexed lookup array, sized to the largest symbol so that
+     * the common ASCII alphabets stay within a few cache lines.
+     *
+     * @param symbols The input symbols
+     * @return Lookup array mapping a character to its symbol id, or {@value #NO_SYMBOL}
+     */
+    private static int[] buildSymbolIndex(char[] symbols) {
+        int max = -1;
+        for (char symbol : symbols) {
+            max = Math.max(max, symbol);
+        }
+
+        int[] index = new int[max + 1];
+        Arrays.fill(index, NO_SYMBOL);
+        for (int i = 0; i < symbols.length; i++) {
+            if (index[symbols[i]] != NO_SYMBOL) {
+                throw new IllegalArgumentException("Duplicate symbol: '" + symbols[i] + "'");
+            }
+            index[symbols[i]] = i;
+        }
+        return index;
+    }
+
+    /**
+     * Checks if the automaton accepts the given input.
+     * <p>
+     * The loop performs no allocation and stops as soon as the dead state is reached.
+     *
+     * @param input The input to check
+     * @return True if the input is accepted, false otherwise
+     */
+    public boolean accepts(CharSequence input) {
+        int[] index = symbolIndex;
+        int[] table = transitions;
+        int width = symbolCount;
+        int state = startState;
+
+        for (int i = 0, n = input.length(); i < n; i++) {
+            char c = input.charAt(i);
+            if (c >= index.length) {
+                return false;
+            }
+            int symbol = index[c];
+            if (symbol == NO_SYMBOL) {
+                return false;
+            }
+            state = table[state * width + symbol];
+            if (state == DEAD_STATE) {
+                return false;
+            }
+        }
+
+        return accepting[state];
+    }
+
+    /**
+     * Finds the longest prefix of the input, starting at the given index, that is accepted.
+     * <p>
+     * The scan follows the transition table and stops as soon as the dead state is reached.
+     * Trap states are folded into the dead state, so it reads at most one character past the
+     * longest prefix that can still be extended to an accepted one.
+     *
+     * @param input The input to scan
+     * @param from  The index to start at
+     * @return The index after the longest accepted prefix, {@code from} itself if only the empty
+     * prefix is accepted, or -1 if no prefix is accepted
+     * @throws IndexOutOfBoundsException if from is not within {@code [0, input.length()]}
+     */
+    public int longestAcceptedPrefix(CharSequence input, int from) {
+        Objects.checkIndex(from, input.length() + 1);
+        int state = startState;
+        int longest = accepting[state] ? from : -1;
+
+        for (int i = from, n = input.length(); i < n; i++) {
+            char c = input.charAt(i);
+            int symbol = c < symbolIndex.length ? symbolIndex[c] : NO_SYMBOL;
+            if (symbol == NO_SYMBOL) {
+                break;
+            }
+            state = transitions[state * symbolCount + symbol];
+            if (state == DEAD_STATE) {
+                break;
+            }
+            if (accepting[state]) {
+                longest = i + 1;
+            }
+        }
+        return longest;
+    }
+
+    /**
+     * Scans the input for non-overlapping, non-empty matches, leftmost-longest first.
+     * <p>
+     * At each position the longest accepted prefix is taken as a match and the scan resumes after it;
+     * positions without a non-empty match are skipped one character at a time. The input must not
+     * change while the matches are consumed.
+     *
+     * @param input The input to scan
+     * @return Lazy stream of the matches, in order of position
+     */
+    public Stream<Match> matches(CharSequence input) {
+        Objects.requireNonNull(input, "Input cannot be null");
+        Iterator<Match> iterator = new Iterator<>() {
+            private int position;
+            private Match next;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null && position < input.length()) {
+                    int end = longestAcceptedPrefix(input, position);
+                    if (end > position) {
+                        next = new Match(input, position, end);
+                        position = end;
+                    } else {
+                        position++;
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            public Match next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Match result = next;
+                next = null;
+                return result;
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator,
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * Creates a cursor for feeding input incrementally, positioned at the start state.
+     *
+     * @return A new cursor
+     */
+    public AcceptanceCursor cursor() {
+        return new AcceptanceCursor(this);
+    }
+
+    /**
+     * Checks a batch of inputs, splitting the work across the common fork-join pool.
+     *
+     * @param inputs The inputs to check; null elements are rejected
+     * @return Bitmap whose bit {@code i} is set if {@code inputs[i]} is accepted
+     */
+    public BitSet acceptsAll(String[] inputs) {
+        return acceptsAll(inputs, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Checks a batch of inputs, splitting the work across the given fork-join pool.
+     *
+     * @param inputs The inputs to check; null elements are rejected
+     * @param pool   The pool to run the batch in
+     * @return Bitmap whose bit {@code i} is set if {@code inputs[i]} is accepted
+     */
+    public BitSet acceptsAll(String[] inputs, ForkJoinPool pool) {
+        Objects.requireNonNull(inputs, "Inputs cannot be null");
+        Objects.requireNonNull(pool, "Pool cannot be null");
+
+        long[] words = new long[(inputs.length + 63) >>> 6];
+        BatchAcceptTask task = new BatchAcceptTask(this, inputs, words, 0, inputs.length);
+        if (inputs.length <= BatchAcceptTask.LEAF_SIZE) {
+            task.invoke();
+        } else {
+            pool.invoke(task);
+        }
+        return BitSet.valueOf(words);
+    }
+
+    /**
+     * Checks a batch of inputs in parallel.
+     *
+     * @param inputs The inputs to check; null elements are rejected
+     * @return Bitmap whose bit {@code i} is set if the i-th input is accepted
+     */
+    public BitSet acceptsAll(List<String> inputs) {
+        Objects.requireNonNull(inputs, "Inputs cannot be null");
+        return acceptsAll(inputs.toArray(new String[0]));
+    }
+
+    /**
+     * Checks a batch of inputs in parallel, consuming the stream in encounter order.
+     *
+     * @param inputs The inputs to check; null elements are rejected
+     * @return Bitmap whose bit {@code i} is set if the i-th input is accepted
+     */
+    public BitSet acceptsAll(Stream<String> inputs) {
+        Objects.requireNonNull(inputs, "Inputs cannot be null");
+        return acceptsAll(inputs.toArray(String[]::new));
+    }
+
+    /**
+     * Lazily enumerates every accepted string in shortlex order.
+     * <p>
+     * The stream is infinite if the language is; use {@link Stream#limit(long)} to bound it.
+     *
+     * @return Ordered stream of the accepted strings
+     */
+    public Stream<String> acceptedStrings() {
+        return acceptedStrings(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Lazily enumerates the accepted strings up to a given length in shortlex order.
+     *
+     * @param maxLength The maximum length of strings to enumerate
+     * @return Ordered stream of the accepted strings
+     * @throws IllegalArgumentException if maxLength is negative
+     */
+    public Stream<String> acceptedStrings(int maxLength) {
+        if (maxLength < 0) {
+            throw new IllegalArgumentException("Maximum length cannot be negative");
+        }
+        ShortlexIterator iterator = new ShortlexIterator(this, maxLength);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator,
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * Computes the minimal automaton accepting the same language.
+     * <p>
+     * Unreachable states are removed and equivalent states merged with Hopcroft's algorithm,
+     * so the result has the smallest possible transition table.
+     *
+     * @return The minimal automaton; this automaton is left unchanged
+     * @see HopcroftMinimizer
+     */
+    public CompiledAutomaton minimize() {
+        return new HopcroftMinimizer(this).minimize();
+    }
+
+    /**
+     * Finds the states reachable from the start state.
+     *
+     * @return Flags indexed by state id
+     */
+    boolean[] reachableStates() {
+        boolean[] reachable = new boolean[getStateCount()];
+        int[] queue = new int[getStateCount()];
+        int head = 0;
+        int tail = 0;
+        reachable[startState] = true;
+        queue[tail++] = startState;
+
+        while (head < tail) {
+            int state = queue[head++];
+            for (int symbol = 0; symbol < symbolCount; symbol++) {
+                int target = transitions[state * symbolCount + symbol];
+                if (!reachable[target]) {
+                    reachable[target] = true;
+                    queue[tail++] = target;
+                }
+            }
+        }
+        return reachable;
+    }
+
+    /**
+     * Finds the states from which some final state can be reached.
+     *
+     * @return Flags indexed by state id
+     */
+    boolean[] liveStates() {
+        return liveStates(transitions, accepting, symbolCount);
+    }
+
+    private static boolean[] liveStates(int[] transitions, boolean[] accepting, int symbolCount) {
+        int stateCount = accepting.length;
+
+        // Reverse adjacency in CSR form
+        int[] offsets = new int[stateCount + 1];
+        for (int target : transitions) {
+            offsets[target + 1]++;
+        }
+        for (int state = 0; state < stateCount; state++) {
+            offsets[state + 1] += offsets[state];
+        }
+        int[] sources = new int[transitions.length];
+        int[] fill = Arrays.copyOf(offsets, stateCount);
+        for (int i = 0; i < transitions.length; i++) {
+            sources[fill[transitions[i]]++] = i / symbolCount;
+        }
+
+        boolean[] live = new boolean[stateCount];
+        int[] queue = new int[stateCount];
+        int head = 0;
+        int tail = 0;
+        for (int state = 0; state < stateCount; state++) {
+            if (accepting[state]) {
+                live[state] = true;
+                queue[tail++] = state;
+            }
+        }
+        while (head < tail) {
+            int state = queue[head++];
+            for (int i = offsets[state]; i < offsets[state + 1]; i++) {
+                if (!live[sources[i]]) {
+                    live[sources[i]] = true;
+                    queue[tail++] = sources[i];
+                }
+            }
+        }
+        return live;
+    }
+
+    /**
+     * Follows a single transition.
+     *
+     * @param state The current state id
+     * @param c     The input character
+     * @return The next state id, or {@link #DEAD_STATE} if no transition exists
+     */
+    public int step(int state, char c) {
+        int symbol = symbolOf(c);
+        return symbol == NO_SYMBOL ? DEAD_STATE : transitions[state * symbolCount + symbol];
+    }
+
+    /**
+     * Gets the symbol id of a character.
+     *
+     * @param c The input character
+     * @return The symbol id, or -1 if the character is not in the alphabet
+     */
+    public int symbolOf(char c) {
+        return c < symbolIndex.length ? symbolIndex[c] : NO_SYMBOL;
+    }
+
+    /**
+     * Gets the target of the transition from a state on a symbol id.
+     *
+     * @param state  The source state id
+     * @param symbol The symbol id
+     * @return The target state id, {@link #DEAD_STATE} if the transition is undefined
+     */
+    public int transition(int state, int symbol) {
+        return transitions[state * symbolCount + symbol];
+    }
+
+    /**
+     * Checks whether a state is accepting.
+     *
+     * @param state The state id
+     * @return True if the state is final
+     */
+    public boolean isAccepting(int state) {
+        return accepting[state];
+    }
+
+    /**
+     * Gets the start state id.
+     *
+     * @return The start state (q0)
+     */
+    public int getStartState() {
+        return startState;
+    }
+
+    /**
+     * Gets the number of states, including the dead state.
+     *
+     * @return The number of states
+     */
+    public int getStateCount() {
+        return stateNames.length;
+    }
+
+    /**
+     * Gets the number of input symbols.
+     *
+     * @return The alphabet size
+     */
+    public int getSymbolCount() {
+        return symbolCount;
+    }
+
+    /**
+     * Gets the character of a symbol id.
+     *
+     * @param symbol The symbol id
+     * @return The input character
+     */
+    public char getSymbol(int symbol) {
+        return symbols[symbol];
+    }
+
+    /**
+     * Gets the display name of a state.
+     *
+     * @param state The state id
+     * @return The state name
+     */
+    public String getStateName(int state) {
+        return stateNames[state];
+    }
+
+    @Override
+    public String toString() {
+        return "CompiledAutomaton[states=" + stateNames.length +
+                ", symbols=" + new String(symbols) +
+                ", start=" + stateNames[startState] + "]";
+    }
+}
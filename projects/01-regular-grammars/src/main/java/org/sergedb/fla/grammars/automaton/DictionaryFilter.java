@@ -0,0 +1,127 @@
+package org.sergedb.fla.grammars.automaton;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.IntStream;
+
+/**
+ * Filters large word lists against a {@link CompiledAutomaton}, evaluating shared prefixes only once.
+ * <p>
+ * The words are sorted, which lays them out in the depth-first order of the trie they form: the
+ * longest common prefix of a word and its predecessor is exactly the part of the trie path the two
+ * share. The filter keeps the automaton state reached after every character of the last walked word,
+ * resumes each word at the end of the shared prefix, and skips every following word that shares a
+ * prefix on which the automaton already died, so whole subtrees are pruned without being visited.
+ * The trie itself is never materialized.
+ * <p>
+ * Large inputs are cut into contiguous ranges of the sorted array that are walked in parallel;
+ * only the prefixes shared across a range boundary are evaluated twice.
+ */
+public final class DictionaryFilter {
+    private static final int RANGE_SIZE = 1 << 16;
+
+    private final CompiledAutomaton automaton;
+
+    /**
+     * Creates a filter for the given automaton.
+     *
+     * @param automaton The automaton the words are checked against
+     */
+    public DictionaryFilter(CompiledAutomaton automaton) {
+        this.automaton = Objects.requireNonNull(automaton, "Automaton cannot be null");
+    }
+
+    /**
+     * Finds the accepted members of a collection of words.
+     *
+     * @param words The words to check
+     * @return The distinct accepted words, in sorted order
+     * @throws NullPointerException if words or any element is null
+     */
+    public List<String> acceptedMembers(Collection<String> words) {
+        Objects.requireNonNull(words, "Words cannot be null");
+        String[] sorted = words.toArray(new String[0]);
+        for (String word : sorted) {
+            Objects.requireNonNull(word, "Words cannot contain null");
+        }
+        Arrays.parallelSort(sorted);
+
+        int ranges = (sorted.length + RANGE_SIZE - 1) / RANGE_SIZE;
+        if (ranges <= 1) {
+            return walk(sorted, 0, sorted.length);
+        }
+
+        List<List<String>> results = IntStream.range(0, ranges).parallel()
+                .mapToObj(range -> walk(sorted, range * RANGE_SIZE, Math.min(sorted.length, (range + 1) * RANGE_SIZE)))
+                .toList();
+        List<String> accepted = new ArrayList<>();
+        for (List<String> result : results) {
+            // Duplicates of a word can straddle a range boundary
+            int from = !accepted.isEmpty() && !result.isEmpty()
+                    && accepted.get(accepted.size() - 1).equals(result.get(0)) ? 1 : 0;
+            accepted.addAll(result.subList(from, result.size()));
+        }
+        return accepted;
+    }
+
+    /**
+     * Walks a range of the sorted words as a depth-first traversal of their trie.
+     *
+     * @param sorted The sorted words
+     * @param from   Index of the first word of the range
+     * @param to     Index after the last word of the range
+     * @return The distinct accepted words of the range, in sorted order
+     */
+    private List<String> walk(String[] sorted, int from, int to) {
+        List<String> accepted = new ArrayList<>();
+        // states[d] is the state after the first d characters of the last walked word
+        int[] states = new int[16];
+        states[0] = automaton.getStartState();
+        String walked = "";
+        int deadDepth = -1;
+
+        for (int i = from; i < to; i++) {
+            String word = sorted[i];
+            if (i > from && word.equals(sorted[i - 1])) {
+                continue;
+            }
+
+            int depth = commonPrefixLength(walked, word);
+            if (deadDepth >= 0 && depth >= deadDepth) {
+                // The automaton died on a prefix of this word
+                continue;
+            }
+
+            if (states.length <= word.length()) {
+                states = Arrays.copyOf(states, Math.max(states.length * 2, word.length() + 1));
+            }
+            walked = word;
+            deadDepth = -1;
+            for (; depth < word.length(); depth++) {
+                int next = automaton.step(states[depth], word.charAt(depth));
+                states[depth + 1] = next;
+                if (next == CompiledAutomaton.DEAD_STATE) {
+                    deadDepth = depth + 1;
+                    break;
+                }
+            }
+
+            if (deadDepth < 0 && automaton.isAccepting(states[word.length()])) {
+                accepted.add(word);
+            }
+        }
+        return accepted;
+    }
+
+    private static int commonPrefixLength(String a, String b) {
+        int limit = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i < limit && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        return i;
+    }
+}
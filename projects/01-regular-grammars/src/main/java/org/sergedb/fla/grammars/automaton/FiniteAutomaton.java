@@ -5,7 +5,10 @@ import org.sergedb.fla.grammars.model.Production;
 import org.sergedb.fla.grammars.model.ProductionSymbol;
 import org.sergedb.fla.grammars.model.SymbolType;
 
+import java.math.BigInteger;
 import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Represents a finite automaton constructed from a regular grammar.
@@ -15,7 +18,7 @@ import java.util.*;
  * <ul>
  *   <li>Q: set of states</li>
  *   <li>Σ: alphabet (set of input symbols)</li>
- *   <li>δ: transition function δ: Q × Σ → Q</li>
+ *   <li>δ: transition function δ: Q × Σ → P(Q)</li>
  *   <li>q0: initial state</li>
  *   <li>F: set of final/accepting states</li>
  * </ul>
@@ -26,35 +29,76 @@ import java.util.*;
  *   <li>For A → a: Create a transition from state A to a new final state on input a</li>
  *   <li>For A → ε: Make state 'A' a final state</li>
  * </ul>
+ * Terminals longer than one character are read one character at a time: A → abB becomes a chain
+ * A → A·a → B of transitions on 'a' and 'b', and productions of the same state share the intermediate
+ * states of common prefixes. The alphabet Σ is therefore the set of characters used by the terminals.
+ * <p>
+ * Productions such as A → aB and A → aC make the automaton nondeterministic. Every target is kept,
+ * and acceptance is decided by a bit-parallel simulation over the set of active states; the
+ * equivalent DFA is only built, by subset construction, when a feature that needs it is first used.
  */
 public class FiniteAutomaton {
     private static final String FINAL_STATE_SUFFIX = "_final";
+    private static final String DEAD_STATE_NAME = "∅";
+    private static final String PREFIX_STATE_SEPARATOR = "·";
     private final Set<String> Q; // States
     private final Set<String> Sigma; // Alphabet
-    private final Map<String, Map<String, String>> delta; // Transition function
+    private final Map<String, Map<String, Set<String>>> delta; // Transition function
     private final String q0; // Start state
     private final Set<String> F; // Final states
-    // Add a cache for string acceptance
-    private final Map<String, Boolean> acceptanceCache;
+    // Pluggable cache for string acceptance
+    private final AcceptanceCache acceptanceCache;
+    // Whether every (state, symbol) pair has at most one target
+    private final boolean deterministic;
+    // Set-of-states simulator, only for nondeterministic automata
+    private final NfaSimulator nfa;
+    // Table-driven form of δ, built lazily for nondeterministic automata
+    private volatile CompiledAutomaton compiled;
+    // Matcher for approximate acceptance, built on first use
+    private volatile ApproximateMatcher approximateMatcher;
+    // Path counter over the useful states, built on first use
+    private volatile LanguageCounter languageCounter;
 
     /**
      * Creates a finite automaton from the given grammar.
+     * <p>
+     * Acceptance results are not cached, since running the compiled automaton is cheaper
+     * than hashing the input for most strings.
      *
      * @param grammar The grammar to convert into an automaton
      * @throws NullPointerException If the grammar is null
      */
     public FiniteAutomaton(Grammar grammar) {
+        this(grammar, AcceptanceCache.disabled());
+    }
+
+    /**
+     * Creates a finite automaton from the given grammar that caches acceptance results.
+     *
+     * @param grammar         The grammar to convert into an automaton
+     * @param acceptanceCache The cache consulted by {@link #accepts(String)}
+     * @throws NullPointerException If the grammar or the cache is null
+     */
+    public FiniteAutomaton(Grammar grammar, AcceptanceCache acceptanceCache) {
         Objects.requireNonNull(grammar, "Grammar cannot be null");
+        Objects.requireNonNull(acceptanceCache, "Acceptance cache cannot be null");
 
         this.Q = new HashSet<>(grammar.nonTerminals());
-        this.Sigma = new HashSet<>(grammar.terminals());
+        this.Sigma = new HashSet<>();
         this.delta = new HashMap<>();
         this.q0 = grammar.startSymbol();
         this.F = new HashSet<>();
-        this.acceptanceCache = new HashMap<>();
+        this.acceptanceCache = acceptanceCache;
 
         initializeTransitionMap(grammar.nonTerminals());
+        grammar.terminals().forEach(terminal -> terminal.chars()
+                .forEach(c -> Sigma.add(String.valueOf((char) c))));
         buildAutomaton(grammar.rules());
+        this.deterministic = delta.values().stream()
+                .flatMap(stateTransitions -> stateTransitions.values().stream())
+                .allMatch(targets -> targets.size() == 1);
+        this.nfa = deterministic ? null : buildSimulator();
+        this.compiled = deterministic ? compile() : null;
     }
 
     /**
@@ -82,9 +126,9 @@ public class FiniteAutomaton {
      * This method is primarily used for debugging and visualization purposes.
      *
      * @param state The state to get transitions for
-     * @return Map of transitions from the state or an empty map if none exist
+     * @return Map from each input symbol to its target states, or an empty map if none exist
      */
-    public Map<String, String> getTransitionMapForState(String state) {
+    public Map<String, Set<String>> getTransitionMapForState(String state) {
         return Collections.unmodifiableMap(delta.getOrDefault(state, Collections.emptyMap()));
     }
 
@@ -104,45 +148,229 @@ public class FiniteAutomaton {
                 continue;
             }
 
-            // Extract terminal and non-terminal components from the production
-            Optional<ProductionSymbol> terminal = right.stream()
-                    .filter(symbol -> symbol.type() == SymbolType.TERMINAL)
-                    .findFirst();
-
-            Optional<ProductionSymbol> nonTerminal = right.stream()
-                    .filter(symbol -> symbol.type() == SymbolType.NON_TERMINAL)
-                    .findFirst();
+            // Concatenate the terminals and find the non-terminal of the production
+            StringBuilder word = new StringBuilder();
+            ProductionSymbol nonTerminal = null;
+            for (ProductionSymbol symbol : right) {
+                if (symbol.type() == SymbolType.TERMINAL) {
+                    word.append(symbol.value());
+                } else if (nonTerminal == null) {
+                    nonTerminal = symbol;
+                }
+            }
 
             // Process production if it contains a terminal symbol
-            terminal.ifPresent(t ->
-                    processProduction(left, t.value(), nonTerminal.orElse(null)));
+            if (!word.isEmpty()) {
+                processProduction(left, word.toString(), nonTerminal);
+            }
         }
     }
 
     /**
      * Processes a single production rule to create appropriate transitions.
+     * <p>
+     * Every character of the input word but the last leads to an intermediate state named
+     * after the source state and the prefix read so far.
      *
      * @param sourceState The source state (left-hand side non-terminal)
-     * @param inputSymbol The input symbol (terminal)
+     * @param inputWord   The input word (concatenated terminals)
      * @param nonTerminal The optional non-terminal for the target state, or null
      */
-    private void processProduction(String sourceState, String inputSymbol, ProductionSymbol nonTerminal) {
+    private void processProduction(String sourceState, String inputWord, ProductionSymbol nonTerminal) {
+        String state = sourceState;
+        for (int i = 0; i < inputWord.length() - 1; i++) {
+            String prefixState = sourceState + PREFIX_STATE_SEPARATOR + inputWord.substring(0, i + 1);
+            Q.add(prefixState);
+            addTransition(state, String.valueOf(inputWord.charAt(i)), prefixState);
+            state = prefixState;
+        }
+
+        String inputSymbol = String.valueOf(inputWord.charAt(inputWord.length() - 1));
         if (nonTerminal != null) {
             // Production of the form A → aB
-            delta.get(sourceState).put(inputSymbol, nonTerminal.value());
+            addTransition(state, inputSymbol, nonTerminal.value());
         } else {
             // Production of the form A → a
             String finalState = sourceState + FINAL_STATE_SUFFIX;
             Q.add(finalState);
             F.add(finalState);
-            delta.get(sourceState).put(inputSymbol, finalState);
+            addTransition(state, inputSymbol, finalState);
         }
     }
 
+    /**
+     * Adds a target to δ(state, symbol), keeping any targets added before.
+     *
+     * @param state  The source state
+     * @param symbol The input symbol
+     * @param target The target state
+     */
+    private void addTransition(String state, String symbol, String target) {
+        delta.computeIfAbsent(state, k -> new HashMap<>())
+                .computeIfAbsent(symbol, k -> new TreeSet<>())
+                .add(target);
+    }
+
+    /**
+     * Numbers the states in sorted order starting at 1, leaving 0 for the dead state.
+     *
+     * @return The state names indexed by state id
+     */
+    private String[] numberStates() {
+        SortedSet<String> stateSet = new TreeSet<>(Q);
+        delta.values().forEach(stateTransitions -> stateTransitions.values().forEach(stateSet::addAll));
+
+        String[] stateNames = new String[stateSet.size() + 1];
+        stateNames[CompiledAutomaton.DEAD_STATE] = DEAD_STATE_NAME;
+        int id = 1;
+        for (String state : stateSet) {
+            stateNames[id++] = state;
+        }
+        return stateNames;
+    }
+
+    /**
+     * Gets the characters of Σ in sorted order, one per symbol id.
+     *
+     * @return The input symbols
+     */
+    private char[] sortedSymbols() {
+        StringBuilder symbols = new StringBuilder();
+        new TreeSet<>(Sigma).forEach(symbols::append);
+        return symbols.toString().toCharArray();
+    }
+
+    /**
+     * Flags the final states.
+     *
+     * @param stateIds The id of every state
+     * @param count    The number of states, including the dead state
+     * @return Acceptance flags indexed by state id
+     */
+    private boolean[] acceptingStates(Map<String, Integer> stateIds, int count) {
+        boolean[] accepting = new boolean[count];
+        F.forEach(state -> {
+            Integer id = stateIds.get(state);
+            if (id != null) {
+                accepting[id] = true;
+            }
+        });
+        return accepting;
+    }
+
+    /**
+     * Builds the bit-parallel simulator used for nondeterministic automata.
+     *
+     * @return The simulator, with states numbered as in {@link #compile()}
+     */
+    private NfaSimulator buildSimulator() {
+        String[] stateNames = numberStates();
+        Map<String, Integer> stateIds = indexStates(stateNames);
+        char[] symbols = sortedSymbols();
+
+        int[][] successors = new int[stateNames.length * symbols.length][];
+        Arrays.fill(successors, new int[0]);
+        for (Map.Entry<String, Map<String, Set<String>>> entry : delta.entrySet()) {
+            int from = stateIds.get(entry.getKey());
+            for (int symbol = 0; symbol < symbols.length; symbol++) {
+                Set<String> targets = entry.getValue().get(String.valueOf(symbols[symbol]));
+                if (targets != null) {
+                    successors[from * symbols.length + symbol] = targets.stream().mapToInt(stateIds::get).toArray();
+                }
+            }
+        }
+
+        int start = stateIds.getOrDefault(q0, CompiledAutomaton.DEAD_STATE);
+        return new NfaSimulator(stateNames, symbols, successors,
+                acceptingStates(stateIds, stateNames.length), start);
+    }
+
+    private static Map<String, Integer> indexStates(String[] stateNames) {
+        Map<String, Integer> stateIds = new HashMap<>();
+        for (int id = 1; id < stateNames.length; id++) {
+            stateIds.put(stateNames[id], id);
+        }
+        return stateIds;
+    }
+
+    /**
+     * Compiles a deterministic automaton into a dense transition table.
+     * <p>
+     * States are numbered in sorted order starting at 1, leaving 0 for the dead state,
+     * and every character of Σ gets a column.
+     *
+     * @return The compiled automaton
+     */
+    private CompiledAutomaton compile() {
+        String[] stateNames = numberStates();
+        Map<String, Integer> stateIds = indexStates(stateNames);
+        char[] symbols = sortedSymbols();
+        int symbolCount = symbols.length;
+
+        int[] transitions = new int[stateNames.length * symbolCount];
+        for (Map.Entry<String, Map<String, Set<String>>> entry : delta.entrySet()) {
+            int from = stateIds.get(entry.getKey());
+            for (int symbol = 0; symbol < symbolCount; symbol++) {
+                Set<String> targets = entry.getValue().get(String.valueOf(symbols[symbol]));
+                if (targets != null) {
+                    transitions[from * symbolCount + symbol] = stateIds.get(targets.iterator().next());
+                }
+            }
+        }
+
+        int start = stateIds.getOrDefault(q0, CompiledAutomaton.DEAD_STATE);
+        return new CompiledAutomaton(stateNames, symbols, transitions,
+                acceptingStates(stateIds, stateNames.length), start);
+    }
+
+    /**
+     * Checks whether every state has at most one transition per input symbol.
+     *
+     * @return True if the automaton is deterministic
+     */
+    public boolean isDeterministic() {
+        return deterministic;
+    }
+
+    /**
+     * Gets the compiled, table-driven form of this automaton.
+     * <p>
+     * For a nondeterministic automaton the first call runs the subset construction; its
+     * states are named after the sets of original states they stand for.
+     * The returned object is immutable and can be shared between threads.
+     *
+     * @return The compiled automaton
+     */
+    public CompiledAutomaton getCompiledAutomaton() {
+        CompiledAutomaton result = compiled;
+        if (result == null) {
+            synchronized (this) {
+                result = compiled;
+                if (result == null) {
+                    result = nfa.determinize();
+                    compiled = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gets the minimal deterministic automaton for the language of this automaton.
+     * <p>
+     * Grammars often produce equivalent states, such as one {@code _final} state per production;
+     * these are merged into one, which shrinks the table the acceptance loop runs over.
+     *
+     * @return The minimized compiled automaton
+     */
+    public CompiledAutomaton minimize() {
+        return getCompiledAutomaton().minimize();
+    }
+
     /**
      * Checks if the automaton accepts the given input string.
      * <p>
-     * This implementation uses a cache to avoid recomputing results for previously tested strings.
+     * Results are looked up in the configured {@link AcceptanceCache} first.
      *
      * @param input The input string to check
      * @return True if the string is accepted, false otherwise
@@ -158,33 +386,152 @@ public class FiniteAutomaton {
 
     /**
      * Internal method to check string acceptance without caching.
+     * <p>
+     * Runs over the compiled transition table, so no per-character allocation or hashing takes place.
+     * Nondeterministic automata are simulated over sets of states instead, so that checking
+     * a string never triggers the subset construction.
      *
      * @param input The input string to check
      * @return True if the string is accepted, false otherwise
      */
     private boolean checkAcceptance(String input) {
-        String currentState = q0;
+        return deterministic ? compiled.accepts(input) : nfa.accepts(input);
+    }
 
-        for (char c : input.toCharArray()) {
-            String symbol = String.valueOf(c);
+    /**
+     * Creates a cursor for checking input that arrives in pieces.
+     * <p>
+     * The cursor does not consult the acceptance cache and needs constant memory
+     * regardless of the input length.
+     *
+     * @return A new cursor positioned at the start state
+     */
+    public AcceptanceCursor cursor() {
+        return getCompiledAutomaton().cursor();
+    }
 
-            // Reject if symbol not in alphabet
-            if (!Sigma.contains(symbol)) {
-                return false;
-            }
+    /**
+     * Checks a batch of input strings in parallel.
+     * <p>
+     * The work is split across the common fork-join pool over the immutable compiled
+     * automaton, bypassing the acceptance cache.
+     *
+     * @param inputs The input strings to check
+     * @return Bitmap whose bit {@code i} is set if the i-th string is accepted
+     */
+    public BitSet acceptsAll(List<String> inputs) {
+        return getCompiledAutomaton().acceptsAll(inputs);
+    }
 
-            // Get transitions for current state
-            Map<String, String> stateTransitions = delta.get(currentState);
-            if (stateTransitions == null || !stateTransitions.containsKey(symbol)) {
-                return false;
-            }
+    /**
+     * Checks a batch of input strings in parallel.
+     *
+     * @param inputs The input strings to check
+     * @return Bitmap whose bit {@code i} is set if {@code inputs[i]} is accepted
+     * @see #acceptsAll(List)
+     */
+    public BitSet acceptsAll(String[] inputs) {
+        return getCompiledAutomaton().acceptsAll(inputs);
+    }
+
+    /**
+     * Checks a batch of input strings in parallel.
+     *
+     * @param inputs The input strings to check
+     * @return Bitmap whose bit {@code i} is set if the i-th string of the stream is accepted
+     * @see #acceptsAll(List)
+     */
+    public BitSet acceptsAll(Stream<String> inputs) {
+        return getCompiledAutomaton().acceptsAll(inputs);
+    }
+
+    /**
+     * Finds the longest prefix of the input, starting at the given index, that the automaton accepts.
+     * <p>
+     * Runs on the transition table directly, so no substrings are created.
+     *
+     * @param input The input to scan
+     * @param from  The index to start at
+     * @return The index after the longest accepted prefix, {@code from} if only the empty prefix is
+     * accepted, or -1 if no prefix is accepted
+     * @throws IndexOutOfBoundsException if from is not within {@code [0, input.length()]}
+     */
+    public int longestAcceptedPrefix(CharSequence input, int from) {
+        return getCompiledAutomaton().longestAcceptedPrefix(input, from);
+    }
+
+    /**
+     * Scans the input for all non-overlapping, non-empty, leftmost-longest matches, as a tokenizer would.
+     *
+     * @param input The input to scan
+     * @return Lazy stream of the matches, in order of position
+     * @see CompiledAutomaton#matches(CharSequence)
+     */
+    public Stream<Match> matches(CharSequence input) {
+        return getCompiledAutomaton().matches(input);
+    }
+
+    /**
+     * Checks if the input is within the given number of edits of an accepted string.
+     * <p>
+     * An edit is the insertion, deletion or substitution of a single character.
+     *
+     * @param input    The input string to check
+     * @param maxEdits The maximum number of edits
+     * @return True if some accepted string is at most maxEdits edits away
+     * @throws IllegalArgumentException if maxEdits is negative
+     * @see ApproximateMatcher
+     */
+    public boolean acceptsWithin(String input, int maxEdits) {
+        return getApproximateMatcher().accepts(input, maxEdits);
+    }
+
+    /**
+     * Computes the edit distance from the input to the closest accepted string, up to a bound.
+     *
+     * @param input    The input string to check
+     * @param maxEdits The maximum number of edits to consider
+     * @return The minimal number of edits, or -1 if it exceeds maxEdits
+     * @throws IllegalArgumentException if maxEdits is negative
+     */
+    public int editDistance(String input, int maxEdits) {
+        return getApproximateMatcher().distance(input, maxEdits);
+    }
+
+    /**
+     * Finds an accepted string at minimal edit distance from the input, as a "did you mean" suggestion.
+     *
+     * @param input    The input string to correct
+     * @param maxEdits The maximum number of edits to consider
+     * @return The nearest accepted string, or empty if none is within maxEdits edits
+     * @throws IllegalArgumentException if maxEdits is negative
+     */
+    public Optional<String> nearestAccepted(String input, int maxEdits) {
+        return getApproximateMatcher().nearest(input, maxEdits);
+    }
 
-            // Follow the transition
-            currentState = stateTransitions.get(symbol);
+    private ApproximateMatcher getApproximateMatcher() {
+        ApproximateMatcher result = approximateMatcher;
+        if (result == null) {
+            result = new ApproximateMatcher(getCompiledAutomaton());
+            approximateMatcher = result;
         }
+        return result;
+    }
 
-        // Accept if final state
-        return F.contains(currentState);
+    /**
+     * Filters a dictionary of words, walking the prefixes the words share only once.
+     * <p>
+     * Much faster than calling {@link #accepts(String)} per word when the words overlap heavily,
+     * as in sorted word lists. The acceptance cache is bypassed.
+     *
+     * @param words The words to check
+     * @return The distinct accepted words, in sorted order
+     * @throws NullPointerException if words or any element is null
+     * @see DictionaryFilter
+     */
+    public List<String> acceptedMembers(Collection<String> words) {
+        return new DictionaryFilter(getCompiledAutomaton()).acceptedMembers(words);
     }
 
     /**
@@ -195,6 +542,15 @@ public class FiniteAutomaton {
         acceptanceCache.clear();
     }
 
+    /**
+     * Gets the statistics of the string acceptance cache.
+     *
+     * @return The hit, miss and eviction counters of the cache
+     */
+    public CacheStats getCacheStats() {
+        return acceptanceCache.stats();
+    }
+
     /**
      * Prints a formatted visualization of the automaton's transition function.
      */
@@ -206,61 +562,82 @@ public class FiniteAutomaton {
         Collections.sort(sortedStates);
 
         for (String state : sortedStates) {
-            Map<String, String> stateTransitions = delta.get(state);
+            Map<String, Set<String>> stateTransitions = delta.get(state);
             List<String> symbols = new ArrayList<>(stateTransitions.keySet());
             Collections.sort(symbols);
 
             for (String symbol : symbols) {
-                System.out.printf("  δ(%s,%s) = %s%n", state, symbol, stateTransitions.get(symbol));
+                System.out.printf("  δ(%s,%s) = %s%n", state, symbol, formatTargets(stateTransitions.get(symbol)));
             }
         }
 
         System.out.println("Final states (F): " + F);
     }
 
+    /**
+     * Formats the targets of a transition, as a plain state name when there is only one.
+     *
+     * @param targets The target states
+     * @return The formatted targets
+     */
+    private static String formatTargets(Set<String> targets) {
+        return targets.size() == 1 ? targets.iterator().next() : targets.toString();
+    }
+
     /**
      * Generates all strings accepted by the automaton up to a given length.
      *
      * @param maxLength The maximum length of strings to generate
-     * @return A set of accepted strings
+     * @return A set of accepted strings, in shortlex order
      * @throws IllegalArgumentException if maxLength is negative
      */
     public Set<String> getAcceptedStrings(int maxLength) {
-        if (maxLength < 0) {
-            throw new IllegalArgumentException("Maximum length cannot be negative");
-        }
+        return getCompiledAutomaton().acceptedStrings(maxLength)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
 
-        Set<String> results = new HashSet<>();
-        generateStrings("", q0, results, maxLength);
-        return results;
+    /**
+     * Lazily enumerates the strings accepted by the automaton in shortlex order.
+     * <p>
+     * Strings are produced one at a time, so the first N strings can be taken or the
+     * language streamed to disk in bounded memory.
+     *
+     * @return Ordered, possibly infinite stream of accepted strings
+     */
+    public Stream<String> acceptedStrings() {
+        return getCompiledAutomaton().acceptedStrings();
     }
 
     /**
-     * Recursively generates strings accepted by the automaton.
+     * Counts the strings of exactly the given length accepted by the automaton, without generating them.
      *
-     * @param prefix    Current string prefix
-     * @param state     Current state
-     * @param results   Collection to store accepted strings
-     * @param maxLength Maximum string length
+     * @param length The string length
+     * @return The number of accepted strings of that length
+     * @throws IllegalArgumentException if length is negative
+     * @see LanguageCounter
      */
-    private void generateStrings(String prefix, String state, Set<String> results, int maxLength) {
-        // Add current string if we're in a final state
-        if (F.contains(state)) {
-            results.add(prefix);
-        }
+    public BigInteger countAccepted(int length) {
+        return getLanguageCounter().count(length);
+    }
 
-        // Stop recursion if maximum length reached
-        if (prefix.length() >= maxLength) {
-            return;
-        }
+    /**
+     * Counts the accepted strings of every length up to the given maximum.
+     *
+     * @param maxLength The maximum string length
+     * @return List whose element {@code n} is the number of accepted strings of length n
+     * @throws IllegalArgumentException if maxLength is negative
+     */
+    public List<BigInteger> getAcceptedLengthHistogram(int maxLength) {
+        return getLanguageCounter().histogram(maxLength);
+    }
 
-        // Follow all possible transitions from current state
-        Map<String, String> stateTransitions = delta.getOrDefault(state, Collections.emptyMap());
-        for (Map.Entry<String, String> transition : stateTransitions.entrySet()) {
-            String symbol = transition.getKey();
-            String nextState = transition.getValue();
-            generateStrings(prefix + symbol, nextState, results, maxLength);
+    private LanguageCounter getLanguageCounter() {
+        LanguageCounter result = languageCounter;
+        if (result == null) {
+            result = new LanguageCounter(getCompiledAutomaton());
+            languageCounter = result;
         }
+        return result;
     }
 
     /**
@@ -319,13 +696,13 @@ public class FiniteAutomaton {
         Collections.sort(sortedStates);
 
         for (String state : sortedStates) {
-            Map<String, String> stateTransitions = delta.getOrDefault(state, Collections.emptyMap());
+            Map<String, Set<String>> stateTransitions = delta.getOrDefault(state, Collections.emptyMap());
             List<String> symbols = new ArrayList<>(stateTransitions.keySet());
             Collections.sort(symbols);
 
             for (String symbol : symbols) {
                 sb.append("  δ(").append(state).append(",").append(symbol).append(") = ")
-                        .append(stateTransitions.get(symbol)).append("\n");
+                        .append(formatTargets(stateTransitions.get(symbol))).append("\n");
             }
         }
 
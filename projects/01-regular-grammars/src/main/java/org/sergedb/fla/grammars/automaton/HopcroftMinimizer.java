@@ -0,0 +1,264 @@
+package org.sergedb.fla.grammars.automaton;
+
+import java.util.Arrays;
+import java.util.StringJoiner;
+
+/**
+ * Minimizes a {@link CompiledAutomaton} with Hopcroft's partition refinement.
+ * <p>
+ * Unreachable states are dropped first. The remaining states start out split into accepting and
+ * non-accepting blocks, and a block is split whenever some of its states have a transition into a
+ * splitter (block, symbol) pair and others do not. Only the smaller half of a split is queued as a
+ * new splitter, which bounds the work by {@code O(k·n·log n)} for n states and k symbols.
+ * <p>
+ * Blocks are kept as contiguous ranges of a single permutation array, and the states that are
+ * marked during a refinement round are swapped to the front of their block, so a split only moves
+ * the boundary between the two halves.
+ * <p>
+ * The block of the dead state becomes the dead state of the result, so states that can never reach a
+ * final state are merged into it. Merged states are named after the sorted names of their members.
+ */
+final class HopcroftMinimizer {
+    private final CompiledAutomaton automaton;
+    private final int stateCount;
+    private final int symbolCount;
+
+    // Predecessors in CSR form: sources[predecessorOffsets[t * k + c] ..] all reach t on symbol c
+    private int[] predecessorOffsets;
+    private int[] sources;
+
+    // Partition: block b holds elements[first[b] .. end[b]), the first marked[b] of them marked
+    private int[] elements;
+    private int[] location;
+    private int[] blockOf;
+    private int[] first;
+    private int[] end;
+    private int[] marked;
+    private int blockCount;
+
+    // Splitter worklist of (block, symbol) pairs encoded as block * k + symbol
+    private int[] worklist;
+    private int worklistSize;
+    private boolean[] inWorklist;
+
+    /**
+     * Creates a minimizer for the given automaton.
+     *
+     * @param automaton The automaton to minimize
+     */
+    HopcroftMinimizer(CompiledAutomaton automaton) {
+        this.automaton = automaton;
+        this.stateCount = automaton.getStateCount();
+        this.symbolCount = automaton.getSymbolCount();
+    }
+
+    /**
+     * Computes the minimal automaton.
+     *
+     * @return A minimal automaton accepting the same language
+     */
+    CompiledAutomaton minimize() {
+        boolean[] kept = automaton.reachableStates();
+        kept[CompiledAutomaton.DEAD_STATE] = true;
+
+        buildPredecessors(kept);
+        initializePartition(kept);
+        refine();
+        return buildQuotient(kept);
+    }
+
+    private void buildPredecessors(boolean[] kept) {
+        predecessorOffsets = new int[stateCount * symbolCount + 1];
+        for (int state = 0; state < stateCount; state++) {
+            if (kept[state]) {
+                for (int symbol = 0; symbol < symbolCount; symbol++) {
+                    predecessorOffsets[automaton.transition(state, symbol) * symbolCount + symbol + 1]++;
+                }
+            }
+        }
+        for (int i = 0; i < stateCount * symbolCount; i++) {
+            predecessorOffsets[i + 1] += predecessorOffsets[i];
+        }
+
+        sources = new int[predecessorOffsets[stateCount * symbolCount]];
+        int[] fill = Arrays.copyOf(predecessorOffsets, stateCount * symbolCount);
+        for (int state = 0; state < stateCount; state++) {
+            if (kept[state]) {
+                for (int symbol = 0; symbol < symbolCount; symbol++) {
+                    sources[fill[automaton.transition(state, symbol) * symbolCount + symbol]++] = state;
+                }
+            }
+        }
+    }
+
+    private void initializePartition(boolean[] kept) {
+        elements = new int[stateCount];
+        location = new int[stateCount];
+        blockOf = new int[stateCount];
+        first = new int[stateCount];
+        end = new int[stateCount];
+        marked = new int[stateCount];
+        Arrays.fill(blockOf, -1);
+
+        // Non-accepting states form block 0, accepting states block 1
+        int size = 0;
+        for (int pass = 0; pass < 2; pass++) {
+            int start = size;
+            for (int state = 0; state < stateCount; state++) {
+                if (kept[state] && automaton.isAccepting(state) == (pass == 1)) {
+                    elements[size] = state;
+                    location[state] = size++;
+                }
+            }
+            if (size > start) {
+                first[blockCount] = start;
+                end[blockCount] = size;
+                for (int i = start; i < size; i++) {
+                    blockOf[elements[i]] = blockCount;
+                }
+                blockCount++;
+            }
+        }
+
+        worklist = new int[Math.max(1, stateCount * symbolCount)];
+        inWorklist = new boolean[stateCount * symbolCount];
+        int smaller = blockCount == 2 && end[1] - first[1] < end[0] - first[0] ? 1 : 0;
+        for (int symbol = 0; symbol < symbolCount; symbol++) {
+            push(smaller * symbolCount + symbol);
+        }
+    }
+
+    private void push(int splitter) {
+        if (!inWorklist[splitter]) {
+            inWorklist[splitter] = true;
+            worklist[worklistSize++] = splitter;
+        }
+    }
+
+    private void refine() {
+        int[] splitterStates = new int[stateCount];
+        int[] touched = new int[stateCount];
+
+        while (worklistSize > 0) {
+            int splitter = worklist[--worklistSize];
+            inWorklist[splitter] = false;
+            int block = splitter / symbolCount;
+            int symbol = splitter % symbolCount;
+
+            // Snapshot the splitter, since marking may reorder its elements
+            int size = end[block] - first[block];
+            System.arraycopy(elements, first[block], splitterStates, 0, size);
+
+            int touchedCount = 0;
+            for (int i = 0; i < size; i++) {
+                int pair = splitterStates[i] * symbolCount + symbol;
+                for (int j = predecessorOffsets[pair]; j < predecessorOffsets[pair + 1]; j++) {
+                    int state = sources[j];
+                    int owner = blockOf[state];
+                    int position = location[state];
+                    int boundary = first[owner] + marked[owner];
+                    if (position < boundary) {
+                        continue;
+                    }
+                    if (marked[owner] == 0) {
+                        touched[touchedCount++] = owner;
+                    }
+                    swap(position, boundary);
+                    marked[owner]++;
+                }
+            }
+
+            for (int i = 0; i < touchedCount; i++) {
+                split(touched[i]);
+            }
+        }
+    }
+
+    private void swap(int i, int j) {
+        int a = elements[i];
+        int b = elements[j];
+        elements[i] = b;
+        elements[j] = a;
+        location[a] = j;
+        location[b] = i;
+    }
+
+    /**
+     * Splits the marked states off a block, unless every state of the block is marked.
+     *
+     * @param block The block to split
+     */
+    private void split(int block) {
+        int count = marked[block];
+        marked[block] = 0;
+        if (count == end[block] - first[block]) {
+            return;
+        }
+
+        int created = blockCount++;
+        first[created] = first[block];
+        end[created] = first[block] + count;
+        first[block] = end[created];
+        for (int i = first[created]; i < end[created]; i++) {
+            blockOf[elements[i]] = created;
+        }
+
+        int createdSize = end[created] - first[created];
+        int remainingSize = end[block] - first[block];
+        for (int symbol = 0; symbol < symbolCount; symbol++) {
+            if (inWorklist[block * symbolCount + symbol] || createdSize <= remainingSize) {
+                push(created * symbolCount + symbol);
+            } else {
+                push(block * symbolCount + symbol);
+            }
+        }
+    }
+
+    private CompiledAutomaton buildQuotient(boolean[] kept) {
+        // Number the blocks by their smallest member, which puts the dead state's block first
+        int[] blockId = new int[blockCount];
+        Arrays.fill(blockId, -1);
+        int[] representative = new int[blockCount];
+        int count = 0;
+        for (int state = 0; state < stateCount; state++) {
+            if (kept[state] && blockId[blockOf[state]] < 0) {
+                blockId[blockOf[state]] = count;
+                representative[count++] = state;
+            }
+        }
+
+        String[] names = new String[count];
+        boolean[] accepting = new boolean[count];
+        int[] transitions = new int[count * symbolCount];
+        for (int id = 0; id < count; id++) {
+            int state = representative[id];
+            accepting[id] = automaton.isAccepting(state);
+            for (int symbol = 0; symbol < symbolCount; symbol++) {
+                transitions[id * symbolCount + symbol] = blockId[blockOf[automaton.transition(state, symbol)]];
+            }
+            names[id] = blockName(blockOf[state]);
+        }
+        names[CompiledAutomaton.DEAD_STATE] = automaton.getStateName(CompiledAutomaton.DEAD_STATE);
+
+        char[] symbols = new char[symbolCount];
+        for (int symbol = 0; symbol < symbolCount; symbol++) {
+            symbols[symbol] = automaton.getSymbol(symbol);
+        }
+
+        int start = blockId[blockOf[automaton.getStartState()]];
+        return new CompiledAutomaton(names, symbols, transitions, accepting, start);
+    }
+
+    private String blockName(int block) {
+        if (end[block] - first[block] == 1) {
+            return automaton.getStateName(elements[first[block]]);
+        }
+        int[] members = Arrays.copyOfRange(elements, first[block], end[block]);
+        Arrays.sort(members);
+        StringJoiner name = new StringJoiner(", ", "{", "}");
+        for (int member : members) {
+            name.add(automaton.getStateName(member));
+        }
+        return name.toString();
+    }
+}
@@ -0,0 +1,235 @@
+package org.sergedb.fla.grammars.automaton;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Counts the strings of a given length accepted by a {@link CompiledAutomaton} without enumerating them.
+ * <p>
+ * The number of accepted strings of length n is the number of length-n paths from the start state
+ * to a final state. Only useful states (reachable from the start and able to reach a final state)
+ * can lie on such a path, so the counter works on the transition-count matrix M of those states,
+ * where {@code M[i][j]} is the number of symbols leading from i to j. Counts are computed either by
+ * dynamic programming over the edges ({@code O(n·|edges|)} additions) or, for large n, by
+ * exponentiation by squaring of M ({@code O(|states|³·log n)} multiplications).
+ * <p>
+ * Counts are exact. Note that for languages with exponential growth the count itself has
+ * {@code Θ(n)} bits, which bounds how fast any exact answer can be produced for very large n.
+ */
+public final class LanguageCounter {
+    private final int size;
+    private final int start;
+    private final boolean[] accepting;
+    // Sparse transition-count matrix, one (from, to, multiplicity) triple per distinct edge
+    private final int[] edgeFrom;
+    private final int[] edgeTo;
+    private final BigInteger[] edgeCount;
+
+    /**
+     * Creates a counter for the given automaton.
+     *
+     * @param automaton The automaton whose language to count
+     */
+    public LanguageCounter(CompiledAutomaton automaton) {
+        Objects.requireNonNull(automaton, "Automaton cannot be null");
+
+        int stateCount = automaton.getStateCount();
+        int symbolCount = automaton.getSymbolCount();
+        boolean[] reachable = automaton.reachableStates();
+        boolean[] live = automaton.liveStates();
+
+        int[] index = new int[stateCount];
+        Arrays.fill(index, -1);
+        int useful = 0;
+        for (int state = 0; state < stateCount; state++) {
+            if (reachable[state] && live[state]) {
+                index[state] = useful++;
+            }
+        }
+
+        this.size = useful;
+        this.start = index[automaton.getStartState()];
+        this.accepting = new boolean[useful];
+
+        List<int[]> edges = new ArrayList<>();
+        int[] multiplicity = new int[useful];
+        for (int state = 0; state < stateCount; state++) {
+            int from = index[state];
+            if (from < 0) {
+                continue;
+            }
+            accepting[from] = automaton.isAccepting(state);
+
+            // Count the row's targets, then emit and reset only the ones touched, so each state costs O(|Σ|)
+            for (int symbol = 0; symbol < symbolCount; symbol++) {
+                int to = index[automaton.transition(state, symbol)];
+                if (to >= 0) {
+                    multiplicity[to]++;
+                }
+            }
+            for (int symbol = 0; symbol < symbolCount; symbol++) {
+                int to = index[automaton.transition(state, symbol)];
+                if (to >= 0 && multiplicity[to] > 0) {
+                    edges.add(new int[]{from, to, multiplicity[to]});
+                    multiplicity[to] = 0;
+                }
+            }
+        }
+
+        this.edgeFrom = new int[edges.size()];
+        this.edgeTo = new int[edges.size()];
+        this.edgeCount = new BigInteger[edges.size()];
+        for (int i = 0; i < edges.size(); i++) {
+            edgeFrom[i] = edges.get(i)[0];
+            edgeTo[i] = edges.get(i)[1];
+            edgeCount[i] = BigInteger.valueOf(edges.get(i)[2]);
+        }
+    }
+
+    /**
+     * Counts the accepted strings of exactly the given length.
+     *
+     * @param length The string length
+     * @return The number of accepted strings of that length
+     * @throws IllegalArgumentException if length is negative
+     */
+    public BigInteger count(int length) {
+        if (length < 0) {
+            throw new IllegalArgumentException("Length cannot be negative");
+        }
+        if (start < 0) {
+            return BigInteger.ZERO;
+        }
+
+        // Pick whichever of the two approaches needs fewer big-number operations
+        long dynamicCost = (long) length * Math.max(1, edgeFrom.length);
+        long matrixCost = (long) size * size * size * (64 - Long.numberOfLeadingZeros(length));
+        BigInteger[] vector = matrixCost < dynamicCost ? powerFromStart(length) : stepFromStart(length, null);
+        return acceptedSum(vector);
+    }
+
+    /**
+     * Counts the accepted strings of every length from 0 up to the given maximum.
+     *
+     * @param maxLength The maximum string length
+     * @return Unmodifiable list whose element {@code n} is the number of accepted strings of length n
+     * @throws IllegalArgumentException if maxLength is negative
+     */
+    public List<BigInteger> histogram(int maxLength) {
+        if (maxLength < 0) {
+            throw new IllegalArgumentException("Maximum length cannot be negative");
+        }
+        if (start < 0) {
+            return Collections.nCopies(maxLength + 1, BigInteger.ZERO);
+        }
+
+        List<BigInteger> histogram = new ArrayList<>(maxLength + 1);
+        stepFromStart(maxLength, histogram);
+        return Collections.unmodifiableList(histogram);
+    }
+
+    /**
+     * Propagates path counts from the start state one step at a time.
+     *
+     * @param length    Number of steps
+     * @param histogram Receives the accepted count after each step (including step 0), or null
+     * @return Path counts per state after the last step
+     */
+    private BigInteger[] stepFromStart(int length, List<BigInteger> histogram) {
+        BigInteger[] current = unitVector();
+        BigInteger[] next = new BigInteger[size];
+
+        for (int step = 0; ; step++) {
+            if (histogram != null) {
+                histogram.add(acceptedSum(current));
+            }
+            if (step == length) {
+                return current;
+            }
+
+            Arrays.fill(next, BigInteger.ZERO);
+            for (int i = 0; i < edgeFrom.length; i++) {
+                BigInteger paths = current[edgeFrom[i]];
+                if (paths.signum() != 0) {
+                    next[edgeTo[i]] = next[edgeTo[i]].add(edgeCount[i].equals(BigInteger.ONE) ? paths : paths.multiply(edgeCount[i]));
+                }
+            }
+            BigInteger[] swap = current;
+            current = next;
+            next = swap;
+        }
+    }
+
+    /**
+     * Computes the start row of {@code M^length} by exponentiation by squaring.
+     *
+     * @param length The exponent
+     * @return Path counts per state after {@code length} steps
+     */
+    private BigInteger[] powerFromStart(int length) {
+        BigInteger[][] power = new BigInteger[size][size];
+        for (BigInteger[] row : power) {
+            Arrays.fill(row, BigInteger.ZERO);
+        }
+        for (int i = 0; i < edgeFrom.length; i++) {
+            power[edgeFrom[i]][edgeTo[i]] = edgeCount[i];
+        }
+
+        BigInteger[] vector = unitVector();
+        for (int remaining = length; remaining > 0; remaining >>>= 1) {
+            if ((remaining & 1) != 0) {
+                vector = multiply(vector, power);
+            }
+            if (remaining > 1) {
+                power = multiply(power, power);
+            }
+        }
+        return vector;
+    }
+
+    private BigInteger[] unitVector() {
+        BigInteger[] vector = new BigInteger[size];
+        Arrays.fill(vector, BigInteger.ZERO);
+        vector[start] = BigInteger.ONE;
+        return vector;
+    }
+
+    private BigInteger acceptedSum(BigInteger[] vector) {
+        BigInteger sum = BigInteger.ZERO;
+        for (int state = 0; state < size; state++) {
+            if (accepting[state]) {
+                sum = sum.add(vector[state]);
+            }
+        }
+        return sum;
+    }
+
+    private static BigInteger[] multiply(BigInteger[] vector, BigInteger[][] matrix) {
+        int n = vector.length;
+        BigInteger[] result = new BigInteger[n];
+        Arrays.fill(result, BigInteger.ZERO);
+        for (int i = 0; i < n; i++) {
+            if (vector[i].signum() == 0) {
+                continue;
+            }
+            for (int j = 0; j < n; j++) {
+                if (matrix[i][j].signum() != 0) {
+                    result[j] = result[j].add(vector[i].parallelMultiply(matrix[i][j]));
+                }
+            }
+        }
+        return result;
+    }
+
+    private static BigInteger[][] multiply(BigInteger[][] left, BigInteger[][] right) {
+        BigInteger[][] result = new BigInteger[left.length][];
+        for (int i = 0; i < left.length; i++) {
+            result[i] = multiply(left[i], right);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,136 @@
+package org.sergedb.fla.grammars.automaton;
+
+import java.io.Serial;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Bounded, thread-safe acceptance cache with least-recently-used eviction.
+ * <p>
+ * The entries are split into independently locked segments, each an access-ordered
+ * {@link LinkedHashMap} holding its share of the maximum size. Threads working on different
+ * segments never contend, and the automaton itself runs outside any lock, so a slow
+ * miss does not block readers of the same segment.
+ */
+public final class LruAcceptanceCache implements AcceptanceCache {
+    private static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+
+    private final Segment[] segments;
+    private final int segmentMask;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Creates a cache holding at most the given number of entries.
+     *
+     * @param maximumSize The maximum number of cached inputs
+     * @throws IllegalArgumentException If maximumSize is not positive
+     */
+    public LruAcceptanceCache(int maximumSize) {
+        this(maximumSize, DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    /**
+     * Creates a cache holding at most the given number of entries.
+     *
+     * @param maximumSize      The maximum number of cached inputs
+     * @param concurrencyLevel The expected number of concurrently accessing threads
+     * @throws IllegalArgumentException If maximumSize or concurrencyLevel is not positive
+     */
+    public LruAcceptanceCache(int maximumSize, int concurrencyLevel) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("Maximum size must be positive");
+        }
+        if (concurrencyLevel <= 0) {
+            throw new IllegalArgumentException("Concurrency level must be positive");
+        }
+
+        // Power of two segment count, never more segments than entries
+        int segmentCount = Integer.highestOneBit(Math.min(concurrencyLevel, maximumSize));
+        this.segments = new Segment[segmentCount];
+        this.segmentMask = segmentCount - 1;
+        for (int i = 0; i < segmentCount; i++) {
+            int capacity = maximumSize / segmentCount + (i < maximumSize % segmentCount ? 1 : 0);
+            segments[i] = new Segment(capacity);
+        }
+    }
+
+    @Override
+    public boolean computeIfAbsent(String input, Predicate<String> acceptor) {
+        Segment segment = segmentFor(input);
+
+        Boolean cached;
+        synchronized (segment) {
+            cached = segment.get(input);
+        }
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+
+        misses.increment();
+        boolean result = acceptor.test(input);
+        synchronized (segment) {
+            segment.put(input, result);
+        }
+        return result;
+    }
+
+    @Override
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    @Override
+    public CacheStats stats() {
+        long size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), size);
+    }
+
+    /**
+     * Picks the segment for a key, spreading the higher hash bits into the lower ones.
+     *
+     * @param input The cache key
+     * @return The segment owning the key
+     */
+    private Segment segmentFor(String input) {
+        int h = input.hashCode();
+        return segments[(h ^ (h >>> 16)) & segmentMask];
+    }
+
+    /**
+     * A single access-ordered map that evicts its eldest entry once over capacity.
+     */
+    private final class Segment extends LinkedHashMap<String, Boolean> {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            if (size() > capacity) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+}
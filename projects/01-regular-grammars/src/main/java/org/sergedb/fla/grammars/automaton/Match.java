@@ -0,0 +1,36 @@
+package org.sergedb.fla.grammars.automaton;
+
+/**
+ * Record class representing a match of an automaton in a character sequence.
+ * <p>
+ * The matched text is only copied out of the source when {@link #value()} is called.
+ *
+ * @param source The searched character sequence
+ * @param start  Index of the first matched character
+ * @param end    Index after the last matched character
+ */
+public record Match(CharSequence source, int start, int end) {
+
+    /**
+     * Gets the number of matched characters.
+     *
+     * @return The match length
+     */
+    public int length() {
+        return end - start;
+    }
+
+    /**
+     * Copies the matched text.
+     *
+     * @return The matched text
+     */
+    public String value() {
+        return source.subSequence(start, end).toString();
+    }
+
+    @Override
+    public String toString() {
+        return "Match[" + start + ", " + end + ")";
+    }
+}
@@ -0,0 +1,265 @@
+package org.sergedb.fla.grammars.automaton;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Finds which of many automata accept an input, in a single pass over the input.
+ * <p>
+ * The classifier runs the product of the automata as one deterministic automaton whose states are
+ * tuples of component states. Since the full product is exponential in the number of automata, its
+ * states and transitions are only created when an input first reaches them, and afterwards every
+ * character costs one table lookup regardless of how many automata are combined. Components that
+ * reach their dead state are dropped from the tuple, so inputs that only fit a few formats quickly
+ * end up in small tuples.
+ * <p>
+ * The number of cached product states is bounded; when the bound is reached the cache is cleared and
+ * rebuilt on demand. Instances keep mutable caches and are not thread-safe, so every thread should
+ * use its own classifier.
+ */
+public final class MultiGrammarClassifier {
+    /**
+     * Default bound on the number of cached product states.
+     */
+    public static final int DEFAULT_MAX_STATES = 1 << 16;
+
+    private static final int NO_SYMBOL = -1;
+    private static final int UNKNOWN = -1;
+    private static final int DEAD = 0;
+
+    private final CompiledAutomaton[] automata;
+    private final int[] symbolIndex;
+    private final int symbolCount;
+    // componentSymbols[component * symbolCount + symbol]: the component's own symbol id, or -1
+    private final int[] componentSymbols;
+    private final int maxStates;
+    private final int[] startTuple;
+
+    // Product states: flattened (component, state) pairs of the live components, in component order
+    private final Map<StateKey, Integer> ids = new HashMap<>();
+    private final List<int[]> tuples = new ArrayList<>();
+    private final List<BitSet> matches = new ArrayList<>();
+    private int[] transitions;
+    private int start;
+
+    /**
+     * Creates a classifier over the given automata with the default cache bound.
+     *
+     * @param automata The automata to combine; the id of an automaton is its index in the list
+     */
+    public MultiGrammarClassifier(List<CompiledAutomaton> automata) {
+        this(automata, DEFAULT_MAX_STATES);
+    }
+
+    /**
+     * Creates a classifier over the given automata.
+     *
+     * @param automata  The automata to combine; the id of an automaton is its index in the list
+     * @param maxStates The maximum number of product states to cache
+     * @throws IllegalArgumentException If maxStates is smaller than 2
+     */
+    public MultiGrammarClassifier(List<CompiledAutomaton> automata, int maxStates) {
+        Objects.requireNonNull(automata, "Automata cannot be null");
+        if (maxStates < 2) {
+            throw new IllegalArgumentException("Maximum number of states must be at least 2");
+        }
+        this.automata = automata.toArray(new CompiledAutomaton[0]);
+        this.maxStates = maxStates;
+
+        // Combined alphabet: the union of every component's characters
+        int maxChar = -1;
+        for (CompiledAutomaton automaton : this.automata) {
+            for (int symbol = 0; symbol < automaton.getSymbolCount(); symbol++) {
+                maxChar = Math.max(maxChar, automaton.getSymbol(symbol));
+            }
+        }
+        this.symbolIndex = new int[maxChar + 1];
+        Arrays.fill(symbolIndex, NO_SYMBOL);
+        int count = 0;
+        for (CompiledAutomaton automaton : this.automata) {
+            for (int symbol = 0; symbol < automaton.getSymbolCount(); symbol++) {
+                char c = automaton.getSymbol(symbol);
+                if (symbolIndex[c] == NO_SYMBOL) {
+                    symbolIndex[c] = count++;
+                }
+            }
+        }
+        this.symbolCount = count;
+
+        this.componentSymbols = new int[this.automata.length * symbolCount];
+        Arrays.fill(componentSymbols, NO_SYMBOL);
+        for (int component = 0; component < this.automata.length; component++) {
+            CompiledAutomaton automaton = this.automata[component];
+            for (int symbol = 0; symbol < automaton.getSymbolCount(); symbol++) {
+                componentSymbols[component * symbolCount + symbolIndex[automaton.getSymbol(symbol)]] = symbol;
+            }
+        }
+
+        int[] pairs = new int[2 * this.automata.length];
+        int size = 0;
+        for (int component = 0; component < this.automata.length; component++) {
+            int state = this.automata[component].getStartState();
+            if (state != CompiledAutomaton.DEAD_STATE) {
+                pairs[size++] = component;
+                pairs[size++] = state;
+            }
+        }
+        this.startTuple = Arrays.copyOf(pairs, size);
+        resetCache();
+    }
+
+    /**
+     * Creates a classifier over the compiled form of the given automata.
+     *
+     * @param automata The automata to combine; the id of an automaton is its index in the list
+     * @return A new classifier
+     */
+    public static MultiGrammarClassifier forAutomata(List<FiniteAutomaton> automata) {
+        Objects.requireNonNull(automata, "Automata cannot be null");
+        return new MultiGrammarClassifier(automata.stream().map(FiniteAutomaton::getCompiledAutomaton).toList());
+    }
+
+    /**
+     * Finds the automata that accept the input.
+     *
+     * @param input The input to classify
+     * @return The ids of the accepting automata
+     */
+    public BitSet classify(CharSequence input) {
+        int state = start;
+        for (int i = 0, n = input.length(); i < n; i++) {
+            char c = input.charAt(i);
+            int symbol = c < symbolIndex.length ? symbolIndex[c] : NO_SYMBOL;
+            if (symbol == NO_SYMBOL) {
+                return new BitSet();
+            }
+
+            int next = transitions[state * symbolCount + symbol];
+            if (next == UNKNOWN) {
+                next = expand(state, symbol);
+            }
+            if (next == DEAD) {
+                return new BitSet();
+            }
+            state = next;
+        }
+        return (BitSet) matches.get(state).clone();
+    }
+
+    /**
+     * Gets the number of combined automata.
+     *
+     * @return The number of automata
+     */
+    public int getAutomatonCount() {
+        return automata.length;
+    }
+
+    /**
+     * Gets the number of product states currently cached, including the dead state.
+     *
+     * @return The number of cached states
+     */
+    public int getCachedStateCount() {
+        return tuples.size();
+    }
+
+    /**
+     * Creates the transition of a product state on a symbol, clearing the cache first if it is full.
+     *
+     * @param state  The source product state
+     * @param symbol The combined symbol id
+     * @return The target product state, valid in the possibly rebuilt cache
+     */
+    private int expand(int state, int symbol) {
+        int[] tuple = tuples.get(state);
+        if (tuples.size() >= maxStates) {
+            resetCache();
+            state = intern(tuple);
+        }
+
+        int[] pairs = new int[tuple.length];
+        int size = 0;
+        for (int i = 0; i < tuple.length; i += 2) {
+            int component = tuple[i];
+            int own = componentSymbols[component * symbolCount + symbol];
+            if (own == NO_SYMBOL) {
+                continue;
+            }
+            int target = automata[component].transition(tuple[i + 1], own);
+            if (target != CompiledAutomaton.DEAD_STATE) {
+                pairs[size++] = component;
+                pairs[size++] = target;
+            }
+        }
+
+        int target = intern(Arrays.copyOf(pairs, size));
+        transitions[state * symbolCount + symbol] = target;
+        return target;
+    }
+
+    /**
+     * Looks up a product state, creating it if it is new.
+     *
+     * @param tuple The (component, state) pairs of the live components
+     * @return The product state id
+     */
+    private int intern(int[] tuple) {
+        StateKey key = new StateKey(tuple);
+        Integer id = ids.get(key);
+        if (id != null) {
+            return id;
+        }
+
+        id = tuples.size();
+        ids.put(key, id);
+        tuples.add(tuple);
+        BitSet accepting = new BitSet(automata.length);
+        for (int i = 0; i < tuple.length; i += 2) {
+            if (automata[tuple[i]].isAccepting(tuple[i + 1])) {
+                accepting.set(tuple[i]);
+            }
+        }
+        matches.add(accepting);
+
+        int required = tuples.size() * symbolCount;
+        if (transitions.length < required) {
+            int grown = Math.max(required, transitions.length * 2);
+            int oldLength = transitions.length;
+            transitions = Arrays.copyOf(transitions, grown);
+            Arrays.fill(transitions, oldLength, grown, UNKNOWN);
+        }
+        return id;
+    }
+
+    private void resetCache() {
+        ids.clear();
+        tuples.clear();
+        matches.clear();
+        transitions = new int[0];
+        intern(new int[0]);
+        // The dead state never leaves itself
+        Arrays.fill(transitions, 0, symbolCount, DEAD);
+        start = intern(startTuple);
+    }
+
+    /**
+     * Hash key for a product state tuple.
+     */
+    private record StateKey(int[] pairs) {
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof StateKey other && Arrays.equals(pairs, other.pairs);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(pairs);
+        }
+    }
+}
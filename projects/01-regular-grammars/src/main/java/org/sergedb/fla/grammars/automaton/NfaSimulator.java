@@ -0,0 +1,250 @@
+package org.sergedb.fla.grammars.automaton;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+
+/**
+ * Bit-parallel simulation of a nondeterministic finite automaton.
+ * <p>
+ * The set of active states is kept as a bitmask: a single {@code long} when the automaton has at
+ * most 64 states, an array of {@code long} words otherwise. Each input character maps the active set
+ * to the union of the successors of its members, so acceptance takes {@code O(|input|·|active|)}
+ * steps without ever constructing the equivalent DFA. For small automata the successor set of every
+ * (state, symbol) pair is precomputed as a mask and a step is a handful of OR operations; larger
+ * automata keep their targets in compressed (offset, target) arrays.
+ * <p>
+ * State ids follow the numbering of {@link CompiledAutomaton}, with state 0 reserved for the dead
+ * state, so {@link #determinize()} can hand out a compatible compiled form on demand.
+ * Instances are immutable and can be shared between threads.
+ */
+final class NfaSimulator {
+    private static final int NO_SYMBOL = -1;
+
+    private final String[] stateNames;
+    private final char[] symbols;
+    private final int[] symbolIndex;
+    private final int symbolCount;
+    private final int words;
+    private final int startState;
+    private final long[] acceptingMask;
+    // targets[offsets[state * symbolCount + symbol] .. offsets[... + 1]) are the successors of the pair
+    private final int[] offsets;
+    private final int[] targets;
+    // Successor masks per (state, symbol) pair, only for automata of at most 64 states
+    private final long[] successorMasks;
+
+    /**
+     * Creates a simulator from the successor lists of every (state, symbol) pair.
+     *
+     * @param stateNames Display name of every state, indexed by state id
+     * @param symbols    The input symbols, indexed by symbol id
+     * @param successors Successor ids per pair, indexed by {@code state * symbols.length + symbol}
+     * @param accepting  Acceptance flag of every state
+     * @param startState The id of the start state
+     */
+    NfaSimulator(String[] stateNames, char[] symbols, int[][] successors, boolean[] accepting, int startState) {
+        this.stateNames = stateNames;
+        this.symbols = symbols;
+        this.symbolCount = symbols.length;
+        this.words = (stateNames.length + 63) >>> 6;
+        this.startState = startState;
+
+        int[] index = new int[symbols.length == 0 ? 0 : max(symbols) + 1];
+        Arrays.fill(index, NO_SYMBOL);
+        for (int i = 0; i < symbols.length; i++) {
+            index[symbols[i]] = i;
+        }
+        this.symbolIndex = index;
+
+        this.acceptingMask = new long[words];
+        for (int state = 0; state < accepting.length; state++) {
+            if (accepting[state]) {
+                acceptingMask[state >>> 6] |= 1L << state;
+            }
+        }
+
+        this.offsets = new int[successors.length + 1];
+        for (int pair = 0; pair < successors.length; pair++) {
+            offsets[pair + 1] = offsets[pair] + successors[pair].length;
+        }
+        this.targets = new int[offsets[successors.length]];
+        for (int pair = 0; pair < successors.length; pair++) {
+            System.arraycopy(successors[pair], 0, targets, offsets[pair], successors[pair].length);
+        }
+
+        if (words == 1) {
+            successorMasks = new long[successors.length];
+            for (int pair = 0; pair < successors.length; pair++) {
+                for (int target : successors[pair]) {
+                    successorMasks[pair] |= 1L << target;
+                }
+            }
+        } else {
+            successorMasks = null;
+        }
+    }
+
+    private static int max(char[] values) {
+        int max = 0;
+        for (char value : values) {
+            max = Math.max(max, value);
+        }
+        return max;
+    }
+
+    /**
+     * Checks if the automaton accepts the given input.
+     *
+     * @param input The input to check
+     * @return True if some run over the input ends in a final state
+     */
+    boolean accepts(CharSequence input) {
+        return words == 1 ? acceptsNarrow(input) : acceptsWide(input);
+    }
+
+    private int symbolOf(char c) {
+        return c < symbolIndex.length ? symbolIndex[c] : NO_SYMBOL;
+    }
+
+    /**
+     * Simulation for automata of at most 64 states, with the active set in one register.
+     */
+    private boolean acceptsNarrow(CharSequence input) {
+        long[] masks = successorMasks;
+        int width = symbolCount;
+        long active = 1L << startState;
+
+        for (int i = 0, n = input.length(); i < n; i++) {
+            int symbol = symbolOf(input.charAt(i));
+            if (symbol == NO_SYMBOL) {
+                return false;
+            }
+
+            long next = 0;
+            for (long bits = active; bits != 0; bits &= bits - 1) {
+                next |= masks[Long.numberOfTrailingZeros(bits) * width + symbol];
+            }
+            if (next == 0) {
+                return false;
+            }
+            active = next;
+        }
+
+        return (active & acceptingMask[0]) != 0;
+    }
+
+    /**
+     * Simulation for larger automata, with the active set spread over an array of words.
+     */
+    private boolean acceptsWide(CharSequence input) {
+        long[] active = new long[words];
+        long[] next = new long[words];
+        active[startState >>> 6] = 1L << startState;
+
+        for (int i = 0, n = input.length(); i < n; i++) {
+            int symbol = symbolOf(input.charAt(i));
+            if (symbol == NO_SYMBOL) {
+                return false;
+            }
+            if (!step(active, symbol, next)) {
+                return false;
+            }
+            long[] swap = active;
+            active = next;
+            next = swap;
+        }
+
+        for (int w = 0; w < words; w++) {
+            if ((active[w] & acceptingMask[w]) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Computes the successors of a set of states on a symbol.
+     *
+     * @param active The active states
+     * @param symbol The symbol id
+     * @param next   Receives the successor states; overwritten
+     * @return False if the successor set is empty
+     */
+    private boolean step(long[] active, int symbol, long[] next) {
+        Arrays.fill(next, 0L);
+        boolean any = false;
+        for (int w = 0; w < words; w++) {
+            for (long bits = active[w]; bits != 0; bits &= bits - 1) {
+                int pair = ((w << 6) + Long.numberOfTrailingZeros(bits)) * symbolCount + symbol;
+                for (int i = offsets[pair]; i < offsets[pair + 1]; i++) {
+                    next[targets[i] >>> 6] |= 1L << targets[i];
+                    any = true;
+                }
+            }
+        }
+        return any;
+    }
+
+    /**
+     * Builds the equivalent DFA by subset construction, restricted to the subsets reachable
+     * from the start state. The empty subset becomes the dead state.
+     *
+     * @return The compiled deterministic automaton
+     */
+    CompiledAutomaton determinize() {
+        Map<BitSet, Integer> ids = new HashMap<>();
+        List<long[]> subsets = new ArrayList<>();
+        int[] table = new int[16 * Math.max(1, symbolCount)];
+
+        long[] dead = new long[words];
+        long[] start = new long[words];
+        start[startState >>> 6] = 1L << startState;
+        ids.put(BitSet.valueOf(dead), 0);
+        subsets.add(dead);
+        ids.put(BitSet.valueOf(start), 1);
+        subsets.add(start);
+
+        long[] next = new long[words];
+        for (int current = 1; current < subsets.size(); current++) {
+            if (table.length < subsets.size() * symbolCount) {
+                table = Arrays.copyOf(table, Math.max(table.length * 2, subsets.size() * symbolCount));
+            }
+            for (int symbol = 0; symbol < symbolCount; symbol++) {
+                if (!step(subsets.get(current), symbol, next)) {
+                    continue;
+                }
+                BitSet key = BitSet.valueOf(next);
+                Integer id = ids.get(key);
+                if (id == null) {
+                    id = subsets.size();
+                    ids.put(key, id);
+                    subsets.add(next.clone());
+                }
+                table[current * symbolCount + symbol] = id;
+            }
+        }
+
+        int stateCount = subsets.size();
+        String[] names = new String[stateCount];
+        boolean[] accepting = new boolean[stateCount];
+        names[CompiledAutomaton.DEAD_STATE] = stateNames[CompiledAutomaton.DEAD_STATE];
+        for (int state = 1; state < stateCount; state++) {
+            long[] subset = subsets.get(state);
+            StringJoiner name = new StringJoiner(", ", "{", "}");
+            for (int w = 0; w < words; w++) {
+                accepting[state] |= (subset[w] & acceptingMask[w]) != 0;
+                for (long bits = subset[w]; bits != 0; bits &= bits - 1) {
+                    name.add(stateNames[(w << 6) + Long.numberOfTrailingZeros(bits)]);
+                }
+            }
+            names[state] = name.toString();
+        }
+
+        return new CompiledAutomaton(names, symbols, Arrays.copyOf(table, stateCount * symbolCount), accepting, 1);
+    }
+}
@@ -0,0 +1,27 @@
+package org.sergedb.fla.grammars.automaton;
+
+import java.util.function.Predicate;
+
+/**
+ * Cache that stores nothing, leaving the acceptance loop allocation-free.
+ */
+final class NoAcceptanceCache implements AcceptanceCache {
+    static final NoAcceptanceCache INSTANCE = new NoAcceptanceCache();
+
+    private NoAcceptanceCache() {
+    }
+
+    @Override
+    public boolean computeIfAbsent(String input, Predicate<String> acceptor) {
+        return acceptor.test(input);
+    }
+
+    @Override
+    public void clear() {
+    }
+
+    @Override
+    public CacheStats stats() {
+        return new CacheStats(0, 0, 0, 0);
+    }
+}
@@ -0,0 +1,217 @@
+package org.sergedb.fla.grammars.automaton;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Lazily enumerates the strings accepted by a {@link CompiledAutomaton} in shortlex order:
+ * shorter strings first, strings of equal length in lexicographic order of their characters.
+ * <p>
+ * Each length is explored with an iterative depth-first walk over a reused character buffer.
+ * A branch is only entered if its state can still reach a final state in exactly the number of
+ * remaining steps, so every branch that is entered produces at least one string and the work per
+ * string is proportional to its length. For finite languages the iterator ends after the longest
+ * accepted string; for infinite languages it only ends at the configured maximum length.
+ */
+final class ShortlexIterator implements Iterator<String> {
+    private final CompiledAutomaton automaton;
+    private final int maxLength;
+    private final char[] symbols;
+    private final int[] symbolIds;
+    // exact.get(r)[s]: state s reaches a final state in exactly r steps
+    private final List<boolean[]> exact = new ArrayList<>();
+
+    private int length = -1;
+    private int depth = -1;
+    private int[] states = new int[1];
+    private int[] nextSymbol = new int[1];
+    private char[] buffer = new char[0];
+    private String next;
+
+    /**
+     * Creates an iterator over the accepted strings of at most the given length.
+     *
+     * @param automaton The automaton to enumerate
+     * @param maxLength The maximum string length to enumerate
+     */
+    ShortlexIterator(CompiledAutomaton automaton, int maxLength) {
+        this.automaton = automaton;
+
+        int symbolCount = automaton.getSymbolCount();
+        this.symbols = new char[symbolCount];
+        for (int i = 0; i < symbolCount; i++) {
+            symbols[i] = automaton.getSymbol(i);
+        }
+        Arrays.sort(symbols);
+        this.symbolIds = new int[symbolCount];
+        for (int i = 0; i < symbolCount; i++) {
+            symbolIds[i] = automaton.symbolOf(symbols[i]);
+        }
+
+        // A finite language has no accepted string longer than the number of states
+        this.maxLength = isLanguageInfinite() ? maxLength : Math.min(maxLength, automaton.getStateCount() - 1);
+
+        boolean[] accepting = new boolean[automaton.getStateCount()];
+        for (int state = 0; state < accepting.length; state++) {
+            accepting[state] = automaton.isAccepting(state);
+        }
+        exact.add(accepting);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            next = advance();
+        }
+        return next != null;
+    }
+
+    @Override
+    public String next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        String result = next;
+        next = null;
+        return result;
+    }
+
+    /**
+     * Continues the depth-first walk up to the next accepted string.
+     *
+     * @return The next string, or null once the enumeration is over
+     */
+    private String advance() {
+        while (true) {
+            if (depth < 0 && !startNextLength()) {
+                return null;
+            }
+
+            if (depth == length) {
+                depth--;
+                return new String(buffer, 0, length);
+            }
+
+            int state = states[depth];
+            boolean[] reachable = exact.get(length - depth - 1);
+            int k = nextSymbol[depth];
+            int target = CompiledAutomaton.DEAD_STATE;
+            while (k < symbols.length) {
+                target = automaton.transition(state, symbolIds[k]);
+                if (reachable[target]) {
+                    break;
+                }
+                k++;
+            }
+
+            if (k < symbols.length) {
+                nextSymbol[depth] = k + 1;
+                buffer[depth] = symbols[k];
+                depth++;
+                states[depth] = target;
+                nextSymbol[depth] = 0;
+            } else {
+                depth--;
+            }
+        }
+    }
+
+    /**
+     * Moves on to the next length that has at least one accepted string.
+     *
+     * @return False if no length up to the maximum has accepted strings left
+     */
+    private boolean startNextLength() {
+        int start = automaton.getStartState();
+        do {
+            if (length >= maxLength) {
+                return false;
+            }
+            length++;
+        } while (!exactly(length)[start]);
+
+        if (states.length <= length) {
+            states = new int[length + 1];
+            nextSymbol = new int[length + 1];
+            buffer = new char[length];
+        }
+        depth = 0;
+        states[0] = start;
+        nextSymbol[0] = 0;
+        return true;
+    }
+
+    /**
+     * Gets the states that reach a final state in exactly the given number of steps,
+     * extending the table one step at a time as needed.
+     *
+     * @param steps The number of steps
+     * @return Flags indexed by state
+     */
+    private boolean[] exactly(int steps) {
+        while (exact.size() <= steps) {
+            boolean[] previous = exact.get(exact.size() - 1);
+            boolean[] current = new boolean[previous.length];
+            // The dead state never reaches a final state, so state 0 is skipped
+            for (int state = 1; state < current.length; state++) {
+                for (int symbol = 0; symbol < symbolIds.length && !current[state]; symbol++) {
+                    current[state] = previous[automaton.transition(state, symbol)];
+                }
+            }
+            exact.add(current);
+        }
+        return exact.get(steps);
+    }
+
+    /**
+     * Checks whether the useful part of the automaton (states that are reachable from the
+     * start state and can reach a final state) contains a cycle, by peeling it in topological order.
+     *
+     * @return True if the language is infinite
+     */
+    private boolean isLanguageInfinite() {
+        int stateCount = automaton.getStateCount();
+        boolean[] useful = automaton.reachableStates();
+        boolean[] live = automaton.liveStates();
+        for (int state = 0; state < stateCount; state++) {
+            useful[state] &= live[state];
+        }
+
+        int[] inDegree = new int[stateCount];
+        int usefulCount = 0;
+        for (int state = 0; state < stateCount; state++) {
+            if (!useful[state]) {
+                continue;
+            }
+            usefulCount++;
+            for (int symbol = 0; symbol < symbolIds.length; symbol++) {
+                int target = automaton.transition(state, symbol);
+                if (useful[target]) {
+                    inDegree[target]++;
+                }
+            }
+        }
+
+        int[] queue = new int[usefulCount];
+        int head = 0;
+        int tail = 0;
+        for (int state = 0; state < stateCount; state++) {
+            if (useful[state] && inDegree[state] == 0) {
+                queue[tail++] = state;
+            }
+        }
+        while (head < tail) {
+            int state = queue[head++];
+            for (int symbol = 0; symbol < symbolIds.length; symbol++) {
+                int target = automaton.transition(state, symbol);
+                if (useful[target] && --inDegree[target] == 0) {
+                    queue[tail++] = target;
+                }
+            }
+        }
+        return tail < usefulCount;
+    }
+}
@@ -1,11 +1,22 @@
 package org.sergedb.fla.grammars.interactive;
 
+import org.sergedb.fla.grammars.automaton.CompiledAutomaton;
 import org.sergedb.fla.grammars.automaton.FiniteAutomaton;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
+import java.util.Set;
+import java.util.TreeSet;
 
 /**
  * Interactive console interface for testing strings against a finite automaton.
@@ -18,9 +29,16 @@ import java.util.Scanner;
  * </ul>
  * <p>
  * The user can exit the interactive mode by entering "exit;" as input.
+ * <p>
+ * For nondeterministic automata every step follows all possible transitions at once, so the
+ * current and next states are shown as sets of states.
+ * <p>
+ * For batches, {@link #traceRejected(Path, Path)} traces only the rejected lines of a file and
+ * writes their traces in a compact text format instead of printing tables.
  */
 public class StringTester {
     private static final String EXIT_COMMAND = "exit;";
+    private static final int WRITER_BUFFER_SIZE = 1 << 16;
     private final FiniteAutomaton automaton;
     private final Scanner scanner;
 
@@ -57,6 +75,123 @@ public class StringTester {
         }
     }
 
+    /**
+     * Traces every rejected line of a file, without user interaction.
+     * <p>
+     * Accepted lines are only checked, not traced. The output starts with one {@code #} line
+     * mapping the state ids of the compiled automaton to their names (tab-separated), followed by one line per
+     * rejected input:
+     * <pre>
+     * lineNumber TAB reason@position TAB state0 state1 ... TAB input
+     * </pre>
+     * where the states are the ids visited up to the failure, {@code position} is the index of the
+     * offending character (or the input length) and {@code reason} is {@code SYMBOL} for a character
+     * outside the alphabet, {@code DEAD} for a missing transition or a transition into a state from which
+     * no final state can be reached, or {@code NONFINAL} for an input that ends in a non-final state.
+     * States are recorded in a reused int buffer and every trace goes through a single buffered writer,
+     * so no objects are created per character.
+     * <p>
+     * Lines end at {@code \n} or {@code \r\n}; a lone {@code \r} is part of the input, so line numbers
+     * agree with the bitmap of {@link org.sergedb.fla.grammars.LineClassifier} for the same file.
+     *
+     * @param input  The file with one input per line
+     * @param output The file to write the traces to
+     * @return The number of inputs and traced rejections
+     * @throws IOException If a file cannot be read or written
+     */
+    public TraceSummary traceRejected(Path input, Path output) throws IOException {
+        long start = System.nanoTime();
+        CompiledAutomaton compiled = automaton.getCompiledAutomaton();
+        int[] states = new int[64];
+        StringBuilder line = new StringBuilder();
+        StringBuilder buffer = new StringBuilder();
+        long inputs = 0;
+        long rejected = 0;
+
+        try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8);
+             BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
+                     Files.newOutputStream(output), StandardCharsets.UTF_8), WRITER_BUFFER_SIZE)) {
+            writeStateNames(compiled, writer);
+
+            String text;
+            while ((text = readLine(reader, buffer)) != null) {
+                inputs++;
+                if (compiled.accepts(text)) {
+                    continue;
+                }
+                rejected++;
+
+                if (states.length <= text.length()) {
+                    states = new int[Math.max(states.length * 2, text.length() + 1)];
+                }
+                int state = compiled.getStartState();
+                states[0] = state;
+                int visited = 1;
+                String reason = "NONFINAL";
+                int position = text.length();
+                for (int i = 0; i < text.length(); i++) {
+                    if (compiled.symbolOf(text.charAt(i)) < 0) {
+                        reason = "SYMBOL";
+                        position = i;
+                        break;
+                    }
+                    state = compiled.step(state, text.charAt(i));
+                    if (state == CompiledAutomaton.DEAD_STATE) {
+                        reason = "DEAD";
+                        position = i;
+                        break;
+                    }
+                    states[visited++] = state;
+                }
+
+                line.setLength(0);
+                line.append(inputs).append('\t').append(reason).append('@').append(position).append('\t');
+                for (int i = 0; i < visited; i++) {
+                    if (i > 0) {
+                        line.append(' ');
+                    }
+                    line.append(states[i]);
+                }
+                line.append('\t').append(text).append('\n');
+                writer.append(line);
+            }
+        }
+
+        return new TraceSummary(inputs, rejected, System.nanoTime() - start);
+    }
+
+    private static void writeStateNames(CompiledAutomaton compiled, BufferedWriter writer) throws IOException {
+        writer.write("# states:");
+        for (int state = 0; state < compiled.getStateCount(); state++) {
+            writer.write("\t" + state + "=" + compiled.getStateName(state));
+        }
+        writer.write('\n');
+    }
+
+    /**
+     * Reads a line terminated by {@code \n} or {@code \r\n}, keeping a lone {@code \r} as content.
+     *
+     * @param reader The reader to read from
+     * @param buffer Reused buffer for the characters of the line
+     * @return The line without its terminator, or null at the end of the input
+     * @throws IOException If the input cannot be read
+     */
+    private static String readLine(BufferedReader reader, StringBuilder buffer) throws IOException {
+        buffer.setLength(0);
+        int c;
+        while ((c = reader.read()) != -1) {
+            if (c == '\n') {
+                int end = buffer.length();
+                if (end > 0 && buffer.charAt(end - 1) == '\r') {
+                    buffer.setLength(end - 1);
+                }
+                return buffer.toString();
+            }
+            buffer.append((char) c);
+        }
+        return buffer.isEmpty() ? null : buffer.toString();
+    }
+
     /**
      * Tests a string against the automaton and displays each transition step.
      *
@@ -71,7 +206,7 @@ public class StringTester {
         System.out.println("\nProcessing string: \"" + input + "\"");
         System.out.println("Starting state: " + automaton.getStartState());
 
-        String currentState = automaton.getStartState();
+        Set<String> currentStates = Set.of(automaton.getStartState());
         boolean accepted = true;
         List<TransitionStep> steps = new ArrayList<>();
 
@@ -79,24 +214,25 @@ public class StringTester {
         for (int i = 0; i < input.length(); i++) {
             String symbol = String.valueOf(input.charAt(i));
 
-            TransitionResult result = processTransition(currentState, symbol);
-            steps.add(new TransitionStep(i, currentState, symbol, result));
+            Set<String> nextStates = processTransition(currentStates, symbol);
+            TransitionResult result = toResult(symbol, nextStates);
+            steps.add(new TransitionStep(i, formatStates(currentStates), symbol, result));
 
             if (!result.isValid()) {
                 accepted = false;
                 break;
             }
 
-            currentState = result.nextState();
+            currentStates = nextStates;
         }
 
         // Print transition table
         printTransitionTable(steps);
 
         // Final acceptance check
-        if (accepted && !automaton.getFinalStates().contains(currentState)) {
+        if (accepted && Collections.disjoint(currentStates, automaton.getFinalStates())) {
             accepted = false;
-            System.out.println("Stopped in non-final state: " + currentState);
+            System.out.println("Stopped in non-final state: " + formatStates(currentStates));
         }
 
         // Print final result
@@ -105,29 +241,52 @@ public class StringTester {
     }
 
     /**
-     * Processes a single transition step.
+     * Processes a single transition step from every current state.
      *
-     * @param state  Current state
+     * @param states Current states
      * @param symbol Input symbol
+     * @return The union of the target states, empty if no transition exists
+     */
+    private Set<String> processTransition(Set<String> states, String symbol) {
+        Set<String> nextStates = new TreeSet<>();
+        for (String state : states) {
+            Map<String, Set<String>> transitions = getTransitionsForState(state);
+            if (transitions != null) {
+                nextStates.addAll(transitions.getOrDefault(symbol, Set.of()));
+            }
+        }
+        return nextStates;
+    }
+
+    /**
+     * Describes the outcome of a transition step.
+     *
+     * @param symbol     Input symbol
+     * @param nextStates The states reached on the symbol
      * @return Transition result containing validity and next state
      */
-    private TransitionResult processTransition(String state, String symbol) {
+    private TransitionResult toResult(String symbol, Set<String> nextStates) {
         // Check if symbol is in alphabet
         if (!automaton.getAlphabet().contains(symbol)) {
             return new TransitionResult(false, null, "Symbol not in alphabet");
         }
 
-        // Get transitions map for state
-        Map<String, String> transitions = getTransitionsForState(state);
-
         // Check if transition exists
-        if (transitions == null || !transitions.containsKey(symbol)) {
+        if (nextStates.isEmpty()) {
             return new TransitionResult(false, null, "No transition defined");
         }
 
-        // Return next state
-        String nextState = transitions.get(symbol);
-        return new TransitionResult(true, nextState, "Transition found");
+        return new TransitionResult(true, formatStates(nextStates), "Transition found");
+    }
+
+    /**
+     * Formats a set of states, as a plain state name when there is only one.
+     *
+     * @param states The states
+     * @return The formatted states
+     */
+    private static String formatStates(Set<String> states) {
+        return states.size() == 1 ? states.iterator().next() : new TreeSet<>(states).toString();
     }
 
     /**
@@ -140,7 +299,7 @@ public class StringTester {
      * @param state The state to get transitions for
      * @return Map of transitions or null if not found
      */
-    private Map<String, String> getTransitionsForState(String state) {
+    private Map<String, Set<String>> getTransitionsForState(String state) {
         // This is a limitation since we don't have direct access to the delta map
         // In a production system, FiniteAutomaton should provide a getter for this
         return automaton.getTransitionMapForState(state);
@@ -0,0 +1,18 @@
+package org.sergedb.fla.grammars.interactive;
+
+/**
+ * Record class representing the outcome of tracing a batch of inputs.
+ *
+ * @param inputs       Number of inputs read
+ * @param rejected     Number of rejected inputs, each of which was traced
+ * @param elapsedNanos Wall-clock time spent tracing, in nanoseconds
+ */
+public record TraceSummary(long inputs, long rejected, long elapsedNanos) {
+
+    @Override
+    public String toString() {
+        return "Inputs: " + inputs +
+                "\nRejected (traced): " + rejected +
+                "\nTime: " + elapsedNanos / 1_000_000 + "ms";
+    }
+}
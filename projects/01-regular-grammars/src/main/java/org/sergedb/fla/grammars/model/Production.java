@@ -1,6 +1,7 @@
 package org.sergedb.fla.grammars.model;
 
 import java.util.List;
+import java.util.stream.Collectors;
 
 /**
  * Represents a production rule in a formal grammar.
@@ -19,16 +20,35 @@ import java.util.List;
  * <p>
  * In the context of regular grammars, rules typically have a specific structure:
  * either `A → a` or`A → aB` where 'A', 'B' are non-terminals and 'a' is a terminal.
+ * <p>
+ * The weight is the relative likelihood of choosing this rule among the rules of the same
+ * non-terminal when generating strings. Rules without an explicit weight have weight 1.
  */
-public record Production(String left, List<ProductionSymbol> right) {
+public record Production(String left, List<ProductionSymbol> right, double weight) {
+
+    /**
+     * Default weight of a production rule
+     */
+    public static final double DEFAULT_WEIGHT = 1.0;
+
+    public Production {
+        if (!(weight > 0) || Double.isInfinite(weight)) {
+            throw new IllegalArgumentException("Production weight must be positive and finite: " + weight);
+        }
+    }
+
+    public Production(String left, List<ProductionSymbol> right) {
+        this(left, right, DEFAULT_WEIGHT);
+    }
 
     @Override
     public String toString() {
+        String suffix = weight == DEFAULT_WEIGHT ? "" : " [" + weight + "]";
         if (right.isEmpty()) {
-            return left + " ----> ε";
+            return left + " ----> ε" + suffix;
         }
-        ProductionSymbol terminal = right.stream().filter(token -> token.type() == SymbolType.TERMINAL).findFirst().orElse(null);
+        String terminals = right.stream().filter(token -> token.type() == SymbolType.TERMINAL).map(ProductionSymbol::value).collect(Collectors.joining());
         ProductionSymbol nonTerminal = right.stream().filter(token -> token.type() == SymbolType.NON_TERMINAL).findFirst().orElse(null);
-        return "\n\t" + left + " --" + (terminal != null ? "(" + terminal.value() + ")" : "---") + "--> " + (nonTerminal != null ? nonTerminal.value() : "ε");
+        return "\n\t" + left + " --" + (!terminals.isEmpty() ? "(" + terminals + ")" : "---") + "--> " + (nonTerminal != null ? nonTerminal.value() : "ε") + suffix;
     }
 }
\ No newline at end of file
@@ -9,10 +9,6 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
-import static org.sergedb.fla.grammars.Main.REGEX_PATTERN;
 
 /**
  * Parses grammar definitions from text into structured {@link Grammar} objects.
@@ -22,22 +18,32 @@ import static org.sergedb.fla.grammars.Main.REGEX_PATTERN;
  * V_N={S, A, B, ...}     // Non-terminal symbols
  * V_T={a, b, c, ...}     // Terminal symbols
  * P={ S -> aA,           // Production rules
- *     A -> bB,
+ *     A -> bB [3] | ε,     // Optional relative weights
  *     B -> c
  * }
  * </pre>
  * <p>
- * The parser extracts these components and constructs a formal grammar representation,
- * validating that the grammar contains the required start symbol and that all symbols
- * in the production rules are defined.
+ * The definition is read by a hand-written scanner in a single pass, so parsing time is linear in
+ * the size of the input. Symbol names may be longer than one character. On the right-hand side of a
+ * rule, symbols may be separated by whitespace or written together, in which case the longest
+ * declared symbol is matched at each position (with {@code V_T={a, ab}}, {@code abab} reads as
+ * {@code ab ab}). Every occurrence of a symbol shares a single interned name and
+ * {@link ProductionSymbol} instance. Lines may end with {@code //} comments. An alternative may end
+ * with a positive weight in square brackets, which sets {@link Production#weight()}; alternatives
+ * without one get {@link Production#DEFAULT_WEIGHT}.
+ * <p>
+ * The parser validates that the grammar contains the required start symbol and that all symbols
+ * in the production rules are defined. Syntax errors are reported as {@link GrammarSyntaxException}
+ * with the line and column of the offending character.
  */
 public class GrammarParser {
 
-    private static final Pattern NON_TERMINALS_PATTERN = Pattern.compile(String.format(REGEX_PATTERN, "V_N"), Pattern.DOTALL);
-    private static final Pattern TERMINALS_PATTERN = Pattern.compile(String.format(REGEX_PATTERN, "V_T"), Pattern.DOTALL);
-    private static final Pattern RULES_PATTERN = Pattern.compile(String.format(REGEX_PATTERN, "P"), Pattern.DOTALL);
+    private static final String NON_TERMINALS_SECTION = "V_N";
+    private static final String TERMINALS_SECTION = "V_T";
+    private static final String RULES_SECTION = "P";
     private static final String START_SYMBOL = "S";
     private static final String EPSILON = "ε";
+    private static final String ARROW = "->";
 
     /**
      * Parses a grammar definition from a file.
@@ -68,13 +74,42 @@ public class GrammarParser {
             throw new IllegalArgumentException("Grammar content cannot be empty");
         }
 
-        Set<String> nonTerminals = extractElements(content, NON_TERMINALS_PATTERN);
-        if (nonTerminals.isEmpty()) {
-            throw new IllegalArgumentException("No non-terminal symbols found in the grammar");
+        Source source = new Source(content);
+        Set<String> nonTerminals = null;
+        Set<String> terminals = null;
+        int rulesStart = -1;
+
+        // Sections may appear in any order; the rules are parsed last, once all symbols are known
+        while (source.skipTrivia()) {
+            int nameStart = source.position;
+            String name = source.readSectionName();
+            source.skipTrivia();
+            source.expect('=');
+            source.skipTrivia();
+            source.expect('{');
+
+            switch (name.toUpperCase(Locale.ROOT)) {
+                case NON_TERMINALS_SECTION -> {
+                    source.checkUnique(nonTerminals, name, nameStart);
+                    nonTerminals = parseSymbolList(source);
+                }
+                case TERMINALS_SECTION -> {
+                    source.checkUnique(terminals, name, nameStart);
+                    terminals = parseSymbolList(source);
+                }
+                case RULES_SECTION -> {
+                    source.checkUnique(rulesStart < 0 ? null : name, name, nameStart);
+                    rulesStart = source.position;
+                    source.skipPast('}');
+                }
+                default -> throw source.error("Unknown section '" + name + "'", nameStart);
+            }
         }
 
-        Set<String> terminals = extractElements(content, TERMINALS_PATTERN);
-        if (terminals.isEmpty()) {
+        if (nonTerminals == null || nonTerminals.isEmpty()) {
+            throw new IllegalArgumentException("No non-terminal symbols found in the grammar");
+        }
+        if (terminals == null || terminals.isEmpty()) {
             throw new IllegalArgumentException("No terminal symbols found in the grammar");
         }
 
@@ -88,9 +123,15 @@ public class GrammarParser {
             throw new IllegalArgumentException("Start symbol '" + START_SYMBOL + "' is not defined in the non-terminals set");
         }
 
-        Map<String, SymbolType> symbolTypeMap = buildSymbolTypeMap(terminals, nonTerminals);
+        SymbolTrie symbols = new SymbolTrie();
+        terminals.forEach(t -> symbols.add(new ProductionSymbol(t, SymbolType.TERMINAL)));
+        nonTerminals.forEach(nt -> symbols.add(new ProductionSymbol(nt, SymbolType.NON_TERMINAL)));
 
-        Set<Production> rules = extractRules(content, symbolTypeMap);
+        Set<Production> rules = new LinkedHashSet<>();
+        if (rulesStart >= 0) {
+            source.position = rulesStart;
+            parseRules(source, symbols, rules);
+        }
         if (rules.isEmpty()) {
             throw new IllegalArgumentException("No production rules found in the grammar");
         }
@@ -99,127 +140,374 @@ public class GrammarParser {
     }
 
     /**
-     * Builds a mapping from symbol values to their types.
+     * Parses a comma-separated list of symbol names up to and including the closing brace.
      *
-     * @param terminals    Set of terminal symbols
-     * @param nonTerminals Set of non-terminal symbols
-     * @return Map of symbol values to their types
+     * @param source The scanner, positioned after the opening brace
+     * @return The symbol names in declaration order
+     * @throws GrammarSyntaxException If the list is malformed
      */
-    private Map<String, SymbolType> buildSymbolTypeMap(Set<String> terminals, Set<String> nonTerminals) {
-        Map<String, SymbolType> symbolTypeMap = new HashMap<>(terminals.size() + nonTerminals.size());
-        terminals.forEach(t -> symbolTypeMap.put(t, SymbolType.TERMINAL));
-        nonTerminals.forEach(nt -> symbolTypeMap.put(nt, SymbolType.NON_TERMINAL));
-        return symbolTypeMap;
+    private Set<String> parseSymbolList(Source source) {
+        Set<String> result = new LinkedHashSet<>();
+
+        source.skipTrivia();
+        if (source.consume('}')) {
+            return result;
+        }
+
+        while (true) {
+            source.skipTrivia();
+            int start = source.position;
+            String symbol = source.readSymbolName();
+            if (symbol.isEmpty()) {
+                throw source.error("Expected a symbol name", start);
+            }
+            if (symbol.equals(EPSILON)) {
+                throw source.error("'" + EPSILON + "' is reserved for the empty string", start);
+            }
+            result.add(symbol);
+
+            source.skipTrivia();
+            if (source.consume('}')) {
+                return result;
+            }
+            if (!source.consume(',')) {
+                throw source.error("Expected ',' or '}'", source.position);
+            }
+        }
     }
 
     /**
-     * Extracts set elements from a section of the grammar definition.
+     * Parses the comma-separated rules of the {@code P} section up to and including the closing brace.
      *
-     * @param content The full grammar definition text
-     * @param pattern The regex pattern to match the specific section
-     * @return A set of extracted elements
+     * @param source  The scanner, positioned after the opening brace
+     * @param symbols The declared symbols
+     * @param result  Collection receiving the productions
+     * @throws GrammarSyntaxException If a rule is malformed or uses undefined symbols
      */
-    private Set<String> extractElements(String content, Pattern pattern) {
-        Set<String> result = new LinkedHashSet<>();
-        Matcher matcher = pattern.matcher(content);
-        if (matcher.find()) {
-            String[] elements = matcher.group(1).split(",");
-            for (String element : elements) {
-                String trimmed = element.trim();
-                if (!trimmed.isEmpty()) {
-                    result.add(trimmed);
-                }
+    private void parseRules(Source source, SymbolTrie symbols, Set<Production> result) {
+        while (true) {
+            source.skipTrivia();
+            if (source.consume('}')) {
+                return;
+            }
+
+            int leftStart = source.position;
+            String leftName = source.readSymbolName();
+            if (leftName.isEmpty()) {
+                throw source.error("Expected the left-hand side of a rule", leftStart);
+            }
+            ProductionSymbol left = symbols.get(leftName);
+            if (left == null || left.type() != SymbolType.NON_TERMINAL) {
+                throw source.error("Left-hand side must be a non-terminal: " + leftName, leftStart);
+            }
+
+            source.skipTrivia();
+            if (!source.consume(ARROW)) {
+                throw source.error("Invalid rule format (check for missing " + ARROW + ") in rule for " + leftName, source.position);
+            }
+
+            do {
+                parseAlternative(source, left.value(), symbols, result);
+            } while (source.consume('|'));
+
+            source.skipTrivia();
+            if (!source.consume(',') && source.peek() != '}') {
+                throw source.error("Expected ',', '|' or '}' after rule for " + leftName, source.position);
             }
         }
-        return result;
     }
 
     /**
-     * Extracts and parses production rules from the grammar definition.
+     * Parses one alternative of a rule's right-hand side.
+     * <p>
+     * Empty alternatives are skipped; {@code ε} stands for the empty string. A trailing
+     * {@code [weight]} sets the weight of the production.
      *
-     * @param content       The full grammar definition text
-     * @param symbolTypeMap Map of symbols to their types for classification
-     * @return A set of structured {@link Production} objects
-     * @throws IllegalArgumentException If a rule has invalid format or contains undefined symbols
+     * @param source  The scanner, positioned at the start of the alternative
+     * @param left    The left-hand side of the rule
+     * @param symbols The declared symbols
+     * @param result  Collection receiving the production
+     * @throws GrammarSyntaxException If the alternative contains an undefined symbol or an invalid weight
      */
-    private Set<Production> extractRules(String content, Map<String, SymbolType> symbolTypeMap) {
-        Set<String> elements = extractElements(content, RULES_PATTERN);
-        if (elements.isEmpty()) {
-            return Set.of();
+    private void parseAlternative(Source source, String left, SymbolTrie symbols, Set<Production> result) {
+        List<ProductionSymbol> right = new ArrayList<>();
+        boolean epsilon = false;
+        double weight = Production.DEFAULT_WEIGHT;
+        int weightStart = -1;
+
+        while (true) {
+            source.skipTrivia();
+            if (source.atEndOfAlternative()) {
+                break;
+            }
+
+            int start = source.position;
+            if (weightStart >= 0) {
+                throw source.error("Weight must be the last part of a production for " + left, start);
+            }
+            if (source.consumeWord(EPSILON)) {
+                epsilon = true;
+                continue;
+            }
+
+            ProductionSymbol symbol = symbols.longestMatch(source.content, start);
+            if (symbol == null && source.peek() == '[') {
+                weightStart = start;
+                weight = parseWeight(source, left);
+                continue;
+            }
+            if (symbol == null) {
+                throw source.error("Unknown symbol in production for " + left + ": '" + source.readSymbolName() + "'", start);
+            }
+            source.position += symbol.value().length();
+            right.add(symbol);
         }
 
-        Set<Production> result = new LinkedHashSet<>();
+        if (epsilon && !right.isEmpty()) {
+            throw source.error("'" + EPSILON + "' cannot be combined with other symbols in a production for " + left, source.position);
+        }
+        if (epsilon || !right.isEmpty()) {
+            result.add(new Production(left, List.copyOf(right), weight));
+        } else if (weightStart >= 0) {
+            throw source.error("Weight without a production for " + left, weightStart);
+        }
+    }
 
-        for (String element : elements) {
-            element = element.trim();
-            if (element.isEmpty()) continue;
+    /**
+     * Parses a weight in square brackets.
+     *
+     * @param source The scanner, positioned at the opening bracket
+     * @param left   The left-hand side of the rule
+     * @return The weight
+     * @throws GrammarSyntaxException If the weight is not a positive, finite number
+     */
+    private double parseWeight(Source source, String left) {
+        int start = source.position;
+        source.expect('[');
+        // The weight cannot run past the end of its alternative
+        int end = source.position;
+        while (end < source.content.length() && "]|,}\r\n".indexOf(source.content.charAt(end)) < 0) {
+            end++;
+        }
+        if (end == source.content.length() || source.content.charAt(end) != ']') {
+            throw source.error("Missing ']' after weight in production for " + left, start);
+        }
+        String text = source.content.substring(source.position, end).trim();
+        source.position = end + 1;
+        try {
+            double weight = Double.parseDouble(text);
+            if (weight > 0 && !Double.isInfinite(weight)) {
+                return weight;
+            }
+        } catch (NumberFormatException ignored) {
+            // Reported below
+        }
+        throw source.error("Invalid weight in production for " + left + ": '" + text + "'", start);
+    }
 
-            String[] parts = element.split("->");
-            if (parts.length != 2) {
-                throw new IllegalArgumentException("Invalid rule format (check for missing ->): " + element);
+    /**
+     * Prefix tree over the declared symbol names, used for longest-match tokenization
+     * and to hand out one shared {@link ProductionSymbol} per name.
+     */
+    private static final class SymbolTrie {
+        private final Node root = new Node();
+
+        void add(ProductionSymbol symbol) {
+            Node node = root;
+            String name = symbol.value();
+            for (int i = 0; i < name.length(); i++) {
+                node = node.childOrCreate(name.charAt(i));
             }
+            node.symbol = symbol;
+        }
 
-            String left = parts[0].trim();
-            if (!symbolTypeMap.containsKey(left)) {
-                throw new IllegalArgumentException("Left-hand side must be a non-terminal: " + left);
+        ProductionSymbol get(String name) {
+            Node node = root;
+            for (int i = 0; i < name.length() && node != null; i++) {
+                node = node.child(name.charAt(i));
             }
+            return node == null ? null : node.symbol;
+        }
 
-            String rightSide = parts[1].trim();
-            for (String right : rightSide.split("\\|")) {
-                parseRightSide(left, right.trim(), symbolTypeMap, result);
+        ProductionSymbol longestMatch(String text, int start) {
+            ProductionSymbol match = null;
+            Node node = root;
+            for (int i = start; i < text.length(); i++) {
+                node = node.child(text.charAt(i));
+                if (node == null) {
+                    break;
+                }
+                if (node.symbol != null) {
+                    match = node.symbol;
+                }
             }
+            return match;
         }
 
-        return result;
-    }
+        private static final class Node {
+            private char[] keys = new char[0];
+            private Node[] children = new Node[0];
+            private ProductionSymbol symbol;
 
-    private void parseRightSide(String left, String right, Map<String, SymbolType> symbolTypeMap, Set<Production> result) {
-        if (right.isEmpty()) {
-            return;
-        }
+            Node child(char c) {
+                int index = Arrays.binarySearch(keys, c);
+                return index >= 0 ? children[index] : null;
+            }
 
-        if (right.equals(EPSILON)) {
-            result.add(new Production(left, List.of()));
-            return;
-        }
+            Node childOrCreate(char c) {
+                int index = Arrays.binarySearch(keys, c);
+                if (index >= 0) {
+                    return children[index];
+                }
 
-        List<ProductionSymbol> tokenRHS = tokenizeRHS(right, symbolTypeMap);
-        result.add(new Production(left, tokenRHS));
+                int insertion = -index - 1;
+                char[] newKeys = new char[keys.length + 1];
+                Node[] newChildren = new Node[children.length + 1];
+                System.arraycopy(keys, 0, newKeys, 0, insertion);
+                System.arraycopy(children, 0, newChildren, 0, insertion);
+                System.arraycopy(keys, insertion, newKeys, insertion + 1, keys.length - insertion);
+                System.arraycopy(children, insertion, newChildren, insertion + 1, children.length - insertion);
+                newKeys[insertion] = c;
+                newChildren[insertion] = new Node();
+                keys = newKeys;
+                children = newChildren;
+                return newChildren[insertion];
+            }
+        }
     }
 
     /**
-     * Tokenizes the right-hand side of a production rule into individual symbols.
-     *
-     * @param rhs           The right-hand side string of a production rule
-     * @param symbolTypeMap Map of symbols to their types for classification
-     * @return Ordered list of {@link ProductionSymbol} objects representing the RHS
-     * @throws IllegalArgumentException If an undefined symbol is encountered
+     * Character-level scanner over the grammar definition.
      */
-    private List<ProductionSymbol> tokenizeRHS(String rhs, Map<String, SymbolType> symbolTypeMap) {
-        if (rhs.isEmpty()) {
-            return List.of();
+    private static final class Source {
+        private final String content;
+        private int position;
+
+        Source(String content) {
+            this.content = content;
         }
 
-        String noSpaces = rhs.replaceAll("\\s+", "");
-        if (noSpaces.isEmpty()) {
-            return List.of();
+        /**
+         * Skips whitespace and {@code //} comments.
+         *
+         * @return False if the end of the input was reached
+         */
+        boolean skipTrivia() {
+            while (position < content.length()) {
+                char c = content.charAt(position);
+                if (Character.isWhitespace(c)) {
+                    position++;
+                } else if (content.startsWith("//", position)) {
+                    int end = content.indexOf('\n', position);
+                    position = end < 0 ? content.length() : end + 1;
+                } else {
+                    return true;
+                }
+            }
+            return false;
         }
 
-        List<ProductionSymbol> tokens = new ArrayList<>(noSpaces.length());
+        char peek() {
+            return position < content.length() ? content.charAt(position) : '\0';
+        }
 
-        for (int i = 0; i < noSpaces.length(); i++) {
-            String s = String.valueOf(noSpaces.charAt(i));
-            SymbolType type = symbolTypeMap.get(s);
+        boolean consume(char c) {
+            if (peek() == c && position < content.length()) {
+                position++;
+                return true;
+            }
+            return false;
+        }
 
-            if (type == null) {
-                throw new IllegalArgumentException(
-                        "Unknown symbol in production at position " + i + ": '" + s + "' in '" + rhs + "'"
-                );
+        boolean consume(String text) {
+            if (content.startsWith(text, position)) {
+                position += text.length();
+                return true;
             }
+            return false;
+        }
 
-            tokens.add(new ProductionSymbol(s, type));
+        /**
+         * Consumes a word only if it is not immediately followed by more name characters.
+         */
+        boolean consumeWord(String word) {
+            int end = position + word.length();
+            if (content.startsWith(word, position) && (end == content.length() || isDelimiter(end))) {
+                position = end;
+                return true;
+            }
+            return false;
         }
 
-        return tokens;
+        void expect(char c) {
+            if (!consume(c)) {
+                throw error("Expected '" + c + "'", position);
+            }
+        }
+
+        /**
+         * Moves past the next occurrence of a character outside of {@code //} comments.
+         */
+        void skipPast(char c) {
+            int start = position;
+            while (skipTrivia()) {
+                if (content.charAt(position++) == c) {
+                    return;
+                }
+            }
+            throw error("Missing '" + c + "'", start);
+        }
+
+        String readSectionName() {
+            int start = position;
+            while (position < content.length()
+                    && (Character.isLetterOrDigit(content.charAt(position)) || content.charAt(position) == '_')) {
+                position++;
+            }
+            if (start == position) {
+                throw error("Expected a section name", start);
+            }
+            return content.substring(start, position);
+        }
+
+        String readSymbolName() {
+            int start = position;
+            while (position < content.length() && !isDelimiter(position)) {
+                position++;
+            }
+            return content.substring(start, position);
+        }
+
+        boolean atEndOfAlternative() {
+            char c = peek();
+            return position >= content.length() || c == ',' || c == '|' || c == '}';
+        }
+
+        private boolean isDelimiter(int index) {
+            char c = content.charAt(index);
+            return Character.isWhitespace(c) || c == ',' || c == '|' || c == '{' || c == '}' || c == '['
+                    || content.startsWith(ARROW, index) || content.startsWith("//", index);
+        }
+
+        void checkUnique(Object previous, String name, int start) {
+            if (previous != null) {
+                throw error("Duplicate section '" + name + "'", start);
+            }
+        }
+
+        /**
+         * Creates an error located at the given offset.
+         */
+        GrammarSyntaxException error(String message, int offset) {
+            int line = 1;
+            int lineStart = 0;
+            for (int i = 0; i < offset && i < content.length(); i++) {
+                if (content.charAt(i) == '\n') {
+                    line++;
+                    lineStart = i + 1;
+                }
+            }
+            return new GrammarSyntaxException(message, line, offset - lineStart + 1);
+        }
     }
-}
\ No newline at end of file
+}
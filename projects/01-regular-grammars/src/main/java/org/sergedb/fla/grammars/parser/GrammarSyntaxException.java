@@ -0,0 +1,48 @@
+package org.sergedb.fla.grammars.parser;
+
+import java.io.Serial;
+
+/**
+ * Thrown when a grammar definition cannot be parsed.
+ * <p>
+ * Carries the 1-based line and column of the offending character, which are also
+ * appended to the message.
+ */
+public class GrammarSyntaxException extends IllegalArgumentException {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private final int line;
+    private final int column;
+
+    /**
+     * Creates a new syntax error.
+     *
+     * @param message Description of the problem
+     * @param line    1-based line of the error
+     * @param column  1-based column of the error
+     */
+    public GrammarSyntaxException(String message, int line, int column) {
+        super(message + " at line " + line + ", column " + column);
+        this.line = line;
+        this.column = column;
+    }
+
+    /**
+     * Gets the line of the error.
+     *
+     * @return The 1-based line number
+     */
+    public int getLine() {
+        return line;
+    }
+
+    /**
+     * Gets the column of the error.
+     *
+     * @return The 1-based column number
+     */
+    public int getColumn() {
+        return column;
+    }
+}
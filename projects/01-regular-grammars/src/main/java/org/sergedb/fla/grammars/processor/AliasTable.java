@@ -0,0 +1,100 @@
+package org.sergedb.fla.grammars.processor;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * Samples indices from a fixed discrete distribution in constant time (Vose's alias method).
+ * <p>
+ * The table splits the distribution into n equally likely columns. Column i keeps index i with
+ * probability {@code probability[i]} and otherwise yields {@code alias[i]}, so a sample costs one
+ * uniform index and one coin flip however many outcomes there are. Building the table takes O(n).
+ * Equal weights skip the coin flip altogether.
+ * <p>
+ * Instances are immutable and can be shared between threads.
+ */
+final class AliasTable {
+    private final double[] probability;
+    private final int[] alias;
+    private final boolean uniform;
+
+    /**
+     * Builds the table for the given weights.
+     *
+     * @param weights Positive, finite relative weights, one per outcome
+     * @throws IllegalArgumentException if there are no weights
+     */
+    AliasTable(double[] weights) {
+        int n = weights.length;
+        if (n == 0) {
+            throw new IllegalArgumentException("Alias table needs at least one weight");
+        }
+
+        double sum = 0;
+        boolean equal = true;
+        for (double weight : weights) {
+            sum += weight;
+            equal &= weight == weights[0];
+        }
+
+        this.probability = new double[n];
+        this.alias = new int[n];
+        this.uniform = equal;
+
+        double[] scaled = new double[n];
+        int[] small = new int[n];
+        int[] large = new int[n];
+        int smallSize = 0;
+        int largeSize = 0;
+        for (int i = 0; i < n; i++) {
+            scaled[i] = weights[i] * n / sum;
+            if (scaled[i] < 1.0) {
+                small[smallSize++] = i;
+            } else {
+                large[largeSize++] = i;
+            }
+        }
+
+        while (smallSize > 0 && largeSize > 0) {
+            int less = small[--smallSize];
+            int more = large[--largeSize];
+            probability[less] = scaled[less];
+            alias[less] = more;
+            scaled[more] = scaled[more] + scaled[less] - 1.0;
+            if (scaled[more] < 1.0) {
+                small[smallSize++] = more;
+            } else {
+                large[largeSize++] = more;
+            }
+        }
+        // Whatever is left is 1 up to rounding error
+        while (largeSize > 0) {
+            probability[large[--largeSize]] = 1.0;
+        }
+        while (smallSize > 0) {
+            probability[small[--smallSize]] = 1.0;
+        }
+    }
+
+    /**
+     * Draws an index.
+     *
+     * @param random The source of randomness
+     * @return An index in {@code [0, n)}, distributed according to the weights
+     */
+    int sample(RandomGenerator random) {
+        int column = random.nextInt(probability.length);
+        if (uniform) {
+            return column;
+        }
+        return random.nextDouble() < probability[column] ? column : alias[column];
+    }
+
+    /**
+     * Gets the number of outcomes.
+     *
+     * @return The number of weights the table was built from
+     */
+    int size() {
+        return probability.length;
+    }
+}
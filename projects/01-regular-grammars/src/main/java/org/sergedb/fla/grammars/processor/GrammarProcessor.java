@@ -5,6 +5,11 @@ import org.sergedb.fla.grammars.model.Production;
 import org.sergedb.fla.grammars.model.ProductionSymbol;
 
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+import java.util.random.RandomGenerator;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * Processes a formal grammar to perform operations like string generation.
@@ -15,14 +20,31 @@ import java.util.*;
  *   <li>Generate random strings that conform to the grammar</li>
  * </ul>
  * <p>
- * The string generation uses a recursive derivation approach, randomly selecting
- * productions when expanding non-terminal symbols. A caching mechanism is employed
- * to improve performance by avoiding redundant lookups of production rules.
+ * The string generation performs a leftmost derivation with an explicit symbol stack,
+ * randomly selecting productions when expanding non-terminal symbols. Derivations deeper than
+ * the configured maximum are abandoned and restarted, so recursive grammars cannot overflow
+ * the stack or loop forever.
+ * <p>
+ * Productions are chosen with probability proportional to their {@link Production#weight()}.
+ * The right-hand sides of every non-terminal are collected into arrays at construction, together
+ * with an {@link AliasTable} over their weights, so each choice takes constant time no matter how
+ * many alternatives a non-terminal has.
+ * <p>
+ * Random derivations favor short strings; use {@link UniformSampler} to draw strings of
+ * a given length uniformly from the language.
  */
 public class GrammarProcessor {
+    /**
+     * Default maximum number of nested expansions in a single derivation
+     */
+    public static final int DEFAULT_MAX_DERIVATION_DEPTH = 10_000;
+    private static final int MAX_DERIVATION_ATTEMPTS = 100;
+    private static final int GENERATION_CHUNK_SIZE = 1024;
+
     private final Grammar grammar;
-    private final Random random;
-    private final Map<String, List<List<ProductionSymbol>>> expansionCache;
+    private final int maxDerivationDepth;
+    private final Map<String, Alternatives> alternatives;
+    private final ThreadLocal<Derivation> derivations;
 
     /**
      * Creates a new processor for the specified grammar.
@@ -31,10 +53,27 @@ public class GrammarProcessor {
      * @throws NullPointerException if grammar is null
      */
     public GrammarProcessor(Grammar grammar) {
+        this(grammar, DEFAULT_MAX_DERIVATION_DEPTH);
+    }
+
+    /**
+     * Creates a new processor for the specified grammar with a bound on derivation depth.
+     *
+     * @param grammar            The grammar to process
+     * @param maxDerivationDepth The maximum number of nested expansions in a single derivation
+     * @throws NullPointerException     if grammar is null
+     * @throws IllegalArgumentException if maxDerivationDepth is not positive
+     */
+    public GrammarProcessor(Grammar grammar, int maxDerivationDepth) {
         Objects.requireNonNull(grammar, "The grammar cannot be null");
+        if (maxDerivationDepth <= 0) {
+            throw new IllegalArgumentException("Maximum derivation depth must be positive");
+        }
         this.grammar = grammar;
-        this.random = new Random();
-        this.expansionCache = new HashMap<>();
+        this.maxDerivationDepth = maxDerivationDepth;
+        this.alternatives = indexAlternatives(grammar.rules());
+        // Runs on the thread that first calls get(), so each thread gets its own generator
+        this.derivations = ThreadLocal.withInitial(() -> new Derivation(ThreadLocalRandom.current()));
     }
 
     /**
@@ -68,61 +107,196 @@ public class GrammarProcessor {
      * Generates a random string that conforms to the grammar.
      * <p>
      * Starting from the grammar's start symbol, this method applies
-     * random production rules until all symbols are terminals.
+     * random production rules until all symbols are terminals. Every thread draws from its own
+     * {@link ThreadLocalRandom}, so concurrent callers do not contend on a shared seed.
      *
      * @return A randomly generated string that follows the grammar rules
-     * @throws IllegalStateException if no expansions are found for a non-terminal
+     * @throws IllegalStateException if no expansions are found for a non-terminal,
+     *                               or no derivation stays within the maximum depth
      */
     public String generateString() {
-        String symbol = grammar.startSymbol();
-        return generateFrom(symbol);
+        return derivations.get().derive(grammar.startSymbol());
     }
 
     /**
-     * Retrieves or computes all possible expansions for a given symbol.
+     * Creates a generator of random strings driven by the given random source.
      * <p>
-     * This method uses caching to improve performance by avoiding
-     * repeated searches through the grammar rules.
+     * The generator reuses its derivation buffers between calls and is meant to be confined
+     * to a single thread, like the random source itself.
      *
-     * @param symbol The symbol to expand
-     * @return List of possible right-hand sides for the given symbol
+     * @param random The source of randomness
+     * @return A supplier that derives a new string on every call
      */
-    private List<List<ProductionSymbol>> expand(String symbol) {
-        return expansionCache.computeIfAbsent(symbol, s -> grammar.rules().stream()
-                .filter(rule -> rule.left().equals(s))
-                .map(Production::right)
-                .toList());
+    public Supplier<String> generator(RandomGenerator random) {
+        Objects.requireNonNull(random, "Random generator cannot be null");
+        Derivation derivation = new Derivation(random);
+        String startSymbol = grammar.startSymbol();
+        return () -> derivation.derive(startSymbol);
     }
 
     /**
-     * Recursively generates a string from a given symbol.
+     * Generates random strings in parallel, reproducibly from a seed.
      * <p>
-     * If the symbol is a terminal, it is returned as is.
-     * If it's a non-terminal, a random production is chosen and
-     * each symbol in the right-hand side is recursively processed.
+     * The work is split into fixed-size chunks, each with its own {@link SplittableRandom}
+     * split off the seeded root in chunk order. The result therefore depends only on the seed
+     * and the count, not on the number of threads or how they are scheduled.
      *
-     * @param symbol The symbol to generate from
-     * @return The generated string
-     * @throws IllegalStateException if no expansions are found for a non-terminal
+     * @param count The number of strings to generate
+     * @param seed  The seed of the random generator
+     * @return The generated strings
+     * @throws IllegalArgumentException if count is negative
+     * @throws IllegalStateException    if no expansions are found for a non-terminal,
+     *                                  or no derivation stays within the maximum depth
      */
-    private String generateFrom(String symbol) {
-        if (grammar.terminals().contains(symbol)) {
-            return symbol;
+    public List<String> generateStrings(int count, long seed) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Count cannot be negative");
         }
 
-        List<List<ProductionSymbol>> expansions = expand(symbol);
+        int chunks = (count + GENERATION_CHUNK_SIZE - 1) / GENERATION_CHUNK_SIZE;
+        SplittableRandom root = new SplittableRandom(seed);
+        SplittableRandom[] randoms = new SplittableRandom[chunks];
+        for (int i = 0; i < chunks; i++) {
+            randoms[i] = root.split();
+        }
+
+        String startSymbol = grammar.startSymbol();
+        String[] results = new String[count];
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            Derivation derivation = new Derivation(randoms[chunk]);
+            int end = Math.min(count, (chunk + 1) * GENERATION_CHUNK_SIZE);
+            for (int i = chunk * GENERATION_CHUNK_SIZE; i < end; i++) {
+                results[i] = derivation.derive(startSymbol);
+            }
+        });
+        return Arrays.asList(results);
+    }
 
-        if (expansions.isEmpty()) {
-            throw new IllegalStateException("No expansions found for symbol: " + symbol);
+    /**
+     * Groups the productions by their left-hand side.
+     * <p>
+     * The alternatives of each non-terminal are sorted, so that seeded generation does not depend
+     * on the iteration order of the rule set.
+     *
+     * @param rules The production rules
+     * @return The alternatives of every non-terminal that has productions
+     */
+    private static Map<String, Alternatives> indexAlternatives(Set<Production> rules) {
+        Comparator<Production> order = Comparator
+                .comparing((Production rule) -> rule.right().stream()
+                        .map(ProductionSymbol::value)
+                        .collect(Collectors.joining(" ")))
+                .thenComparingDouble(Production::weight);
+
+        Map<String, Alternatives> result = new HashMap<>();
+        rules.stream()
+                .collect(Collectors.groupingBy(Production::left))
+                .forEach((left, productions) -> {
+                    productions.sort(order);
+                    String[][] rightHandSides = new String[productions.size()][];
+                    double[] weights = new double[productions.size()];
+                    for (int i = 0; i < productions.size(); i++) {
+                        rightHandSides[i] = productions.get(i).right().stream()
+                                .map(ProductionSymbol::value)
+                                .toArray(String[]::new);
+                        weights[i] = productions.get(i).weight();
+                    }
+                    result.put(left, new Alternatives(rightHandSides, new AliasTable(weights)));
+                });
+        return result;
+    }
+
+    /**
+     * The right-hand sides of one non-terminal and the table to choose among them by weight.
+     */
+    private record Alternatives(String[][] rightHandSides, AliasTable table) {
+        String[] choose(RandomGenerator random) {
+            return rightHandSides[table.sample(random)];
         }
+    }
 
-        List<ProductionSymbol> randomRHS = expansions.get(random.nextInt(expansions.size()));
+    /**
+     * Iterative derivation state: the pending symbol stack and the output buffer,
+     * both reused across derivations. Each instance is confined to one thread.
+     */
+    private final class Derivation {
+        private final RandomGenerator random;
+        private final StringBuilder output = new StringBuilder();
+        private String[] symbols = new String[16];
+        private int[] depths = new int[16];
+        private int size;
 
-        StringBuilder result = new StringBuilder();
-        for (ProductionSymbol token : randomRHS) {
-            result.append(generateFrom(token.value()));
+        Derivation(RandomGenerator random) {
+            this.random = random;
         }
 
-        return result.toString();
+        /**
+         * Derives a string from a symbol, restarting derivations that grow too deep.
+         *
+         * @param start The symbol to derive from
+         * @return The generated string
+         * @throws IllegalStateException if no expansions are found for a non-terminal,
+         *                               or no attempt stays within the maximum depth
+         */
+        String derive(String start) {
+            for (int attempt = 0; attempt < MAX_DERIVATION_ATTEMPTS; attempt++) {
+                if (tryDerive(start)) {
+                    return output.toString();
+                }
+            }
+            throw new IllegalStateException("No derivation from " + start + " completed within " +
+                    maxDerivationDepth + " nested expansions after " + MAX_DERIVATION_ATTEMPTS + " attempts");
+        }
+
+        /**
+         * Runs one leftmost derivation.
+         * <p>
+         * If the symbol is a terminal, it is appended to the output as is.
+         * If it's a non-terminal, a production is chosen at random by weight and the symbols of its
+         * right-hand side are pushed in reverse so that they are processed left to right.
+         *
+         * @param start The symbol to derive from
+         * @return False if the derivation exceeded the maximum depth
+         */
+        private boolean tryDerive(String start) {
+            output.setLength(0);
+            size = 0;
+            push(start, 0);
+
+            while (size > 0) {
+                size--;
+                String symbol = symbols[size];
+                int depth = depths[size];
+
+                if (grammar.terminals().contains(symbol)) {
+                    output.append(symbol);
+                    continue;
+                }
+                if (depth >= maxDerivationDepth) {
+                    return false;
+                }
+
+                Alternatives expansions = alternatives.get(symbol);
+                if (expansions == null) {
+                    throw new IllegalStateException("No expansions found for symbol: " + symbol);
+                }
+
+                String[] randomRHS = expansions.choose(random);
+                for (int i = randomRHS.length - 1; i >= 0; i--) {
+                    push(randomRHS[i], depth + 1);
+                }
+            }
+            return true;
+        }
+
+        private void push(String symbol, int depth) {
+            if (size == symbols.length) {
+                symbols = Arrays.copyOf(symbols, size * 2);
+                depths = Arrays.copyOf(depths, size * 2);
+            }
+            symbols[size] = symbol;
+            depths[size] = depth;
+            size++;
+        }
     }
-}
\ No newline at end of file
+}
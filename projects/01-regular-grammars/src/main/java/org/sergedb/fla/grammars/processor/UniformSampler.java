@@ -0,0 +1,223 @@
+package org.sergedb.fla.grammars.processor;
+
+import org.sergedb.fla.grammars.automaton.CompiledAutomaton;
+import org.sergedb.fla.grammars.automaton.FiniteAutomaton;
+import org.sergedb.fla.grammars.model.Grammar;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
+
+/**
+ * Draws strings of an exact length uniformly at random from the language of a grammar.
+ * <p>
+ * Unlike {@link GrammarProcessor#generateString()}, which picks productions at random and therefore
+ * favors short derivations, this sampler works on the automaton built from the grammar. It precomputes
+ * {@code paths[r][q]}, the number of accepted strings of length r that can be read starting in state q.
+ * A string is then built one symbol at a time: from state q with r symbols left, symbol a is chosen
+ * with probability {@code paths[r-1][δ(q,a)] / paths[r][q]}, which makes every accepted string of the
+ * requested length equally likely. Each sample costs {@code O(length·|Σ|)}.
+ * <p>
+ * Path counts are kept in {@code long} arithmetic when they fit and in {@link BigInteger} otherwise.
+ * A sampler is immutable and can be shared between threads, each using its own random generator.
+ */
+public class UniformSampler {
+    private final CompiledAutomaton automaton;
+    private final int length;
+    private final long[][] paths;
+    private final BigInteger[][] bigPaths;
+
+    /**
+     * Creates a sampler for strings of the given length generated by the grammar.
+     *
+     * @param grammar The grammar to sample from
+     * @param length  The exact length of the sampled strings
+     * @throws IllegalArgumentException if length is negative
+     */
+    public UniformSampler(Grammar grammar, int length) {
+        this(new FiniteAutomaton(grammar).getCompiledAutomaton(), length);
+    }
+
+    /**
+     * Creates a sampler for strings of the given length accepted by the automaton.
+     *
+     * @param automaton The automaton to sample from
+     * @param length    The exact length of the sampled strings
+     * @throws IllegalArgumentException if length is negative
+     */
+    public UniformSampler(CompiledAutomaton automaton, int length) {
+        Objects.requireNonNull(automaton, "Automaton cannot be null");
+        if (length < 0) {
+            throw new IllegalArgumentException("Length cannot be negative");
+        }
+        this.automaton = automaton;
+        this.length = length;
+
+        long[][] exact = countPaths();
+        this.paths = exact;
+        this.bigPaths = exact == null ? countBigPaths() : null;
+    }
+
+    /**
+     * Counts paths in {@code long} arithmetic.
+     *
+     * @return The path counts, or null if any count overflows
+     */
+    private long[][] countPaths() {
+        int stateCount = automaton.getStateCount();
+        long[][] counts = new long[length + 1][stateCount];
+        for (int state = 0; state < stateCount; state++) {
+            counts[0][state] = automaton.isAccepting(state) ? 1 : 0;
+        }
+
+        try {
+            for (int r = 1; r <= length; r++) {
+                for (int state = 1; state < stateCount; state++) {
+                    long total = 0;
+                    for (int symbol = 0; symbol < automaton.getSymbolCount(); symbol++) {
+                        total = Math.addExact(total, counts[r - 1][automaton.transition(state, symbol)]);
+                    }
+                    counts[r][state] = total;
+                }
+            }
+        } catch (ArithmeticException e) {
+            return null;
+        }
+        return counts;
+    }
+
+    /**
+     * Counts paths in {@link BigInteger} arithmetic.
+     *
+     * @return The path counts
+     */
+    private BigInteger[][] countBigPaths() {
+        int stateCount = automaton.getStateCount();
+        BigInteger[][] counts = new BigInteger[length + 1][stateCount];
+        for (int state = 0; state < stateCount; state++) {
+            counts[0][state] = automaton.isAccepting(state) ? BigInteger.ONE : BigInteger.ZERO;
+        }
+
+        for (int r = 1; r <= length; r++) {
+            counts[r][CompiledAutomaton.DEAD_STATE] = BigInteger.ZERO;
+            for (int state = 1; state < stateCount; state++) {
+                BigInteger total = BigInteger.ZERO;
+                for (int symbol = 0; symbol < automaton.getSymbolCount(); symbol++) {
+                    total = total.add(counts[r - 1][automaton.transition(state, symbol)]);
+                }
+                counts[r][state] = total;
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Gets the number of distinct strings this sampler draws from.
+     *
+     * @return The number of accepted strings of the configured length
+     */
+    public BigInteger getLanguageSize() {
+        int start = automaton.getStartState();
+        return paths != null ? BigInteger.valueOf(paths[length][start]) : bigPaths[length][start];
+    }
+
+    /**
+     * Gets the length of the sampled strings.
+     *
+     * @return The string length
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Draws one string uniformly at random.
+     *
+     * @param random The source of randomness
+     * @return An accepted string of the configured length
+     * @throws IllegalStateException if no accepted string has the configured length
+     */
+    public String sample(RandomGenerator random) {
+        if (getLanguageSize().signum() == 0) {
+            throw new IllegalStateException("No accepted strings of length " + length);
+        }
+
+        char[] buffer = new char[length];
+        int state = automaton.getStartState();
+        for (int r = length; r > 0; r--) {
+            int symbol = paths != null ? chooseSymbol(state, r, random) : chooseBigSymbol(state, r, random);
+            buffer[length - r] = automaton.getSymbol(symbol);
+            state = automaton.transition(state, symbol);
+        }
+        return new String(buffer);
+    }
+
+    /**
+     * Draws strings reproducibly from a seed.
+     *
+     * @param count The number of strings to draw
+     * @param seed  The seed of the random generator
+     * @return The sampled strings
+     * @throws IllegalStateException if no accepted string has the configured length
+     */
+    public List<String> sample(int count, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        List<String> samples = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            samples.add(sample(random));
+        }
+        return samples;
+    }
+
+    private int chooseSymbol(int state, int remaining, RandomGenerator random) {
+        long[] next = paths[remaining - 1];
+        long pick = random.nextLong(paths[remaining][state]);
+        int symbol = 0;
+        while (true) {
+            pick -= next[automaton.transition(state, symbol)];
+            if (pick < 0) {
+                return symbol;
+            }
+            symbol++;
+        }
+    }
+
+    private int chooseBigSymbol(int state, int remaining, RandomGenerator random) {
+        BigInteger[] next = bigPaths[remaining - 1];
+        BigInteger pick = randomBelow(bigPaths[remaining][state], random);
+        int symbol = 0;
+        while (true) {
+            pick = pick.subtract(next[automaton.transition(state, symbol)]);
+            if (pick.signum() < 0) {
+                return symbol;
+            }
+            symbol++;
+        }
+    }
+
+    /**
+     * Draws a uniformly distributed value in [0, bound) by rejection sampling on random bits.
+     *
+     * @param bound  The exclusive upper bound, positive
+     * @param random The source of randomness
+     * @return The random value
+     */
+    private static BigInteger randomBelow(BigInteger bound, RandomGenerator random) {
+        int bits = bound.bitLength();
+        byte[] bytes = new byte[(bits + 7) / 8 + 1];
+        int excess = bytes.length * 8 - 8 - bits;
+        BigInteger value;
+        do {
+            for (int i = 1; i < bytes.length; i++) {
+                bytes[i] = (byte) random.nextInt();
+            }
+            // Byte 0 stays zero to keep the value positive; trim the lead byte to the bit length
+            bytes[1] &= (byte) (0xFF >>> excess);
+            value = new BigInteger(bytes);
+        } while (value.compareTo(bound) >= 0);
+        return value;
+    }
+}
@@ -1,20 +1,46 @@
 package org.sergedb.fla.grammars;
 
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sergedb.fla.grammars.automaton.AcceptanceCursor;
+import org.sergedb.fla.grammars.automaton.AutomatonSnapshot;
+import org.sergedb.fla.grammars.automaton.CacheStats;
+import org.sergedb.fla.grammars.automaton.CompiledAutomaton;
 import org.sergedb.fla.grammars.automaton.FiniteAutomaton;
+import org.sergedb.fla.grammars.automaton.LanguageCounter;
+import org.sergedb.fla.grammars.automaton.LruAcceptanceCache;
+import org.sergedb.fla.grammars.automaton.Match;
+import org.sergedb.fla.grammars.automaton.MultiGrammarClassifier;
 import org.sergedb.fla.grammars.model.Grammar;
 import org.sergedb.fla.grammars.model.Production;
 import org.sergedb.fla.grammars.model.ProductionSymbol;
 import org.sergedb.fla.grammars.model.SymbolType;
+import org.sergedb.fla.grammars.parser.GrammarParser;
 import org.sergedb.fla.grammars.processor.GrammarProcessor;
 
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.CharBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Optional;
+import java.util.Random;
 import java.util.Set;
 
+import static org.junit.Assert.*;
+
 public class FiniteAutomatonTest {
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     private Grammar grammar;
     private GrammarProcessor grammarProcessor;
     private FiniteAutomaton finiteAutomaton;
@@ -84,4 +110,391 @@ public class FiniteAutomatonTest {
         }
     }
 
+    @Test
+    public void testCompiledAutomaton() {
+        finiteAutomaton = new FiniteAutomaton(grammar);
+        CompiledAutomaton compiled = finiteAutomaton.getCompiledAutomaton();
+
+        // One extra state for the dead state
+        assertEquals(finiteAutomaton.getStates().size() + 1, compiled.getStateCount());
+        assertEquals(grammar.terminals().size(), compiled.getSymbolCount());
+        assertEquals("S", compiled.getStateName(compiled.getStartState()));
+
+        assertTrue(compiled.accepts("abab"));
+        assertTrue(compiled.accepts("bcccd"));
+        assertFalse(compiled.accepts("bcx"));
+        assertFalse(compiled.accepts(""));
+        assertEquals(CompiledAutomaton.DEAD_STATE, compiled.step(compiled.getStartState(), 'd'));
+    }
+
+    @Test
+    public void testBoundedAcceptanceCache() {
+        finiteAutomaton = new FiniteAutomaton(grammar, new LruAcceptanceCache(2, 1));
+
+        assertTrue(finiteAutomaton.accepts("bd"));
+        assertTrue(finiteAutomaton.accepts("bd"));
+        assertFalse(finiteAutomaton.accepts("b"));
+        assertTrue(finiteAutomaton.accepts("abab"));
+
+        CacheStats stats = finiteAutomaton.getCacheStats();
+        assertEquals(1, stats.hitCount());
+        assertEquals(3, stats.missCount());
+        assertEquals(1, stats.evictionCount());
+        assertEquals(2, stats.size());
+    }
+
+    @Test
+    public void testBatchAcceptance() {
+        finiteAutomaton = new FiniteAutomaton(grammar);
+
+        // Large enough to be split into several fork-join tasks
+        String[] inputs = new String[20_000];
+        for (int i = 0; i < inputs.length; i++) {
+            inputs[i] = i % 3 == 0 ? "ab" + "c".repeat(i % 7) + "d" : "a".repeat(i % 5) + "b";
+        }
+
+        BitSet results = finiteAutomaton.acceptsAll(inputs);
+        for (int i = 0; i < inputs.length; i++) {
+            assertEquals(inputs[i], finiteAutomaton.accepts(inputs[i]), results.get(i));
+        }
+        assertEquals(results, finiteAutomaton.acceptsAll(Arrays.asList(inputs)));
+        assertEquals(results, finiteAutomaton.acceptsAll(Arrays.stream(inputs)));
+    }
+
+    @Test
+    public void testAcceptanceCursor() {
+        finiteAutomaton = new FiniteAutomaton(grammar);
+        AcceptanceCursor cursor = finiteAutomaton.cursor();
+
+        cursor.feed('a').feed("ab");
+        assertFalse(cursor.isAccepting());
+        cursor.feed(CharBuffer.wrap("ab"));
+        assertTrue(cursor.isAccepting());
+        assertEquals(5, cursor.getLength());
+
+        cursor.feed("cd");
+        assertTrue(cursor.isDead());
+        assertFalse(cursor.feed("ab").isAccepting());
+
+        CharBuffer chunk = CharBuffer.wrap("bccd");
+        assertTrue(cursor.reset().feed(chunk).isAccepting());
+        assertFalse(chunk.hasRemaining());
+
+        // Entering a state that cannot reach a final state is already dead
+        AcceptanceCursor trapped = new FiniteAutomaton(trapGrammar()).cursor();
+        assertFalse(trapped.isDead());
+        assertTrue(trapped.feed('a').isDead());
+        assertTrue(trapped.feed("bbb").isDead());
+        assertFalse(trapped.reset().feed('c').isDead());
+    }
+
+    @Test
+    public void testAcceptedStringsInShortlexOrder() {
+        finiteAutomaton = new FiniteAutomaton(grammar);
+
+        // Brute force over every string of length <= 6, generated in shortlex order
+        List<String> expected = new ArrayList<>();
+        List<String> level = List.of("");
+        for (int length = 0; length <= 6; length++) {
+            level.stream().filter(finiteAutomaton::accepts).forEach(expected::add);
+            List<String> nextLevel = new ArrayList<>();
+            for (String prefix : level) {
+                for (char c : "abcd".toCharArray()) {
+                    nextLevel.add(prefix + c);
+                }
+            }
+            level = nextLevel;
+        }
+
+        assertEquals(expected, new ArrayList<>(finiteAutomaton.getAcceptedStrings(6)));
+        assertEquals(List.of("bd", "abd", "bab", "bcd"), finiteAutomaton.acceptedStrings().limit(4).toList());
+    }
+
+    @Test
+    public void testCountAccepted() {
+        finiteAutomaton = new FiniteAutomaton(grammar);
+
+        List<BigInteger> histogram = finiteAutomaton.getAcceptedLengthHistogram(8);
+        for (int length = 0; length <= 8; length++) {
+            int finalLength = length;
+            long expected = finiteAutomaton.getAcceptedStrings(8).stream()
+                    .filter(str -> str.length() == finalLength)
+                    .count();
+            assertEquals(BigInteger.valueOf(expected), histogram.get(length));
+            assertEquals(histogram.get(length), finiteAutomaton.countAccepted(length));
+        }
+
+        // Large lengths go through matrix exponentiation and must agree with the step-by-step counts
+        LanguageCounter counter = new LanguageCounter(finiteAutomaton.getCompiledAutomaton());
+        assertEquals(counter.histogram(2000).get(2000), counter.count(2000));
+    }
+
+    @Test
+    public void testNondeterministicGrammar() {
+        ProductionSymbol a = new ProductionSymbol("a", SymbolType.TERMINAL);
+        ProductionSymbol b = new ProductionSymbol("b", SymbolType.TERMINAL);
+        Grammar nondeterministic = new Grammar(
+                Set.of("S", "B"),
+                Set.of("a", "b"),
+                "S",
+                Set.of(
+                        new Production("S", List.of(a, new ProductionSymbol("S", SymbolType.NON_TERMINAL))),
+                        new Production("S", List.of(a, new ProductionSymbol("B", SymbolType.NON_TERMINAL))),
+                        new Production("B", List.of(b))
+                )
+        );
+        finiteAutomaton = new FiniteAutomaton(nondeterministic);
+
+        // Both targets of S on 'a' are kept
+        assertFalse(finiteAutomaton.isDeterministic());
+        assertEquals(Set.of("S", "B"), finiteAutomaton.getTransitionMapForState("S").get("a"));
+
+        assertTrue(finiteAutomaton.accepts("ab"));
+        assertTrue(finiteAutomaton.accepts("aaab"));
+        assertFalse(finiteAutomaton.accepts("b"));
+        assertFalse(finiteAutomaton.accepts("aba"));
+
+        // DFA-based features run over the subset construction
+        assertEquals(List.of("ab", "aab", "aaab"), finiteAutomaton.acceptedStrings().limit(3).toList());
+        assertEquals(BigInteger.ONE, finiteAutomaton.countAccepted(10));
+        assertTrue(finiteAutomaton.cursor().feed("aaab").isAccepting());
+    }
+
+    @Test
+    public void testNondeterministicGrammarWithManyStates() {
+        // (a|b)* followed by 70 a's: more states than fit in a single mask word
+        int chain = 70;
+        Set<String> nonTerminals = new HashSet<>();
+        Set<Production> productions = new HashSet<>();
+        ProductionSymbol a = new ProductionSymbol("a", SymbolType.TERMINAL);
+        ProductionSymbol b = new ProductionSymbol("b", SymbolType.TERMINAL);
+        for (int i = 0; i < chain; i++) {
+            nonTerminals.add("N" + i);
+            productions.add(new Production("N" + i, List.of(a, new ProductionSymbol("N" + (i + 1), SymbolType.NON_TERMINAL))));
+        }
+        nonTerminals.add("N" + chain);
+        productions.add(new Production("N0", List.of(a, new ProductionSymbol("N0", SymbolType.NON_TERMINAL))));
+        productions.add(new Production("N0", List.of(b, new ProductionSymbol("N0", SymbolType.NON_TERMINAL))));
+        productions.add(new Production("N" + chain, List.of()));
+        finiteAutomaton = new FiniteAutomaton(new Grammar(nonTerminals, Set.of("a", "b"), "N0", productions));
+
+        String suffix = "a".repeat(chain);
+        assertTrue(finiteAutomaton.accepts(suffix));
+        assertTrue(finiteAutomaton.accepts("abba" + suffix));
+        assertFalse(finiteAutomaton.accepts("b" + suffix.substring(1)));
+        assertFalse(finiteAutomaton.accepts(suffix + "b"));
+
+        CompiledAutomaton compiled = finiteAutomaton.getCompiledAutomaton();
+        Random random = new Random(7);
+        for (int i = 0; i < 200; i++) {
+            StringBuilder input = new StringBuilder();
+            int length = 60 + random.nextInt(30);
+            for (int j = 0; j < length; j++) {
+                input.append(random.nextInt(8) == 0 ? 'b' : 'a');
+            }
+            if (i % 2 == 0) {
+                input.append(suffix, 0, random.nextInt(chain + 1));
+            }
+            assertEquals(compiled.accepts(input), finiteAutomaton.accepts(input.toString()));
+        }
+    }
+
+    @Test
+    public void testMinimization() {
+        finiteAutomaton = new FiniteAutomaton(grammar);
+        CompiledAutomaton compiled = finiteAutomaton.getCompiledAutomaton();
+        CompiledAutomaton minimal = finiteAutomaton.minimize();
+
+        // B_final and D_final are equivalent and merge into one state
+        assertEquals(compiled.getStateCount() - 1, minimal.getStateCount());
+        assertEquals(minimal.getStateCount(), minimal.minimize().getStateCount());
+        assertEquals(CompiledAutomaton.DEAD_STATE, minimal.step(minimal.getStartState(), 'c'));
+
+        Random random = new Random(11);
+        for (int i = 0; i < 500; i++) {
+            StringBuilder input = new StringBuilder();
+            for (int j = random.nextInt(10); j > 0; j--) {
+                input.append("abcd".charAt(random.nextInt(4)));
+            }
+            assertEquals(compiled.accepts(input), minimal.accepts(input));
+        }
+        assertEquals(compiled.acceptedStrings(8).toList(), minimal.acceptedStrings(8).toList());
+    }
+
+    @Test
+    public void testSnapshotRoundTrip() throws IOException {
+        finiteAutomaton = new FiniteAutomaton(grammar);
+        CompiledAutomaton compiled = finiteAutomaton.minimize();
+        Path snapshot = folder.getRoot().toPath().resolve("rules.fsa");
+
+        AutomatonSnapshot.write(compiled, snapshot);
+        CompiledAutomaton loaded = AutomatonSnapshot.read(snapshot);
+
+        assertEquals(compiled.getStateCount(), loaded.getStateCount());
+        assertEquals(compiled.getStartState(), loaded.getStartState());
+        for (int state = 0; state < compiled.getStateCount(); state++) {
+            assertEquals(compiled.getStateName(state), loaded.getStateName(state));
+            assertEquals(compiled.isAccepting(state), loaded.isAccepting(state));
+            for (int symbol = 0; symbol < compiled.getSymbolCount(); symbol++) {
+                assertEquals(compiled.transition(state, symbol), loaded.transition(state, symbol));
+            }
+        }
+        assertTrue(loaded.accepts("abcd"));
+
+        // Any flipped payload byte must be caught by the checksum
+        byte[] bytes = Files.readAllBytes(snapshot);
+        bytes[bytes.length - 1] ^= 1;
+        Files.write(snapshot, bytes);
+        assertThrows(IOException.class, () -> AutomatonSnapshot.read(snapshot));
+    }
+
+    @Test
+    public void testAcceptedMembersOfDictionary() {
+        finiteAutomaton = new FiniteAutomaton(grammar);
+
+        List<String> words = new ArrayList<>(List.of("abcd", "abab", "ab", "bd", "bd", "", "ca", "cab", "aaab", "abcccd"));
+        Random random = new Random(5);
+        for (int i = 0; i < 2000; i++) {
+            StringBuilder word = new StringBuilder();
+            for (int j = random.nextInt(9); j > 0; j--) {
+                word.append("abcd".charAt(random.nextInt(4)));
+            }
+            words.add(word.toString());
+        }
+
+        List<String> expected = words.stream()
+                .filter(finiteAutomaton::accepts)
+                .distinct()
+                .sorted()
+                .toList();
+        assertEquals(expected, finiteAutomaton.acceptedMembers(words));
+        assertTrue(expected.containsAll(List.of("abcd", "abab", "bd", "abcccd")));
+    }
+
+    @Test
+    public void testMultiGrammarClassification() {
+        GrammarParser parser = new GrammarParser();
+        List<FiniteAutomaton> automata = List.of(
+                new FiniteAutomaton(grammar),
+                new FiniteAutomaton(parser.parseFromString("V_N={S}\nV_T={a, b}\nP={ S -> aS | bS | ε }")),
+                new FiniteAutomaton(parser.parseFromString("V_N={S, A}\nV_T={a, c, d}\nP={ S -> aA | d, A -> cS }"))
+        );
+        MultiGrammarClassifier classifier = MultiGrammarClassifier.forAutomata(automata);
+        // A tiny cache bound forces the product states to be rebuilt over and over
+        MultiGrammarClassifier bounded = new MultiGrammarClassifier(
+                automata.stream().map(FiniteAutomaton::getCompiledAutomaton).toList(), 4);
+
+        assertEquals(BitSet.valueOf(new long[]{0b011}), classifier.classify("abab"));
+        assertEquals(BitSet.valueOf(new long[]{0b100}), classifier.classify("acd"));
+        assertEquals(BitSet.valueOf(new long[]{0b010}), classifier.classify(""));
+        assertTrue(classifier.classify("xyz").isEmpty());
+
+        Random random = new Random(3);
+        for (int i = 0; i < 1000; i++) {
+            StringBuilder input = new StringBuilder();
+            for (int j = random.nextInt(8); j > 0; j--) {
+                input.append("abcd".charAt(random.nextInt(4)));
+            }
+            BitSet expected = new BitSet();
+            for (int id = 0; id < automata.size(); id++) {
+                if (automata.get(id).accepts(input.toString())) {
+                    expected.set(id);
+                }
+            }
+            assertEquals(expected, classifier.classify(input));
+            assertEquals(expected, bounded.classify(input));
+        }
+        assertTrue(bounded.getCachedStateCount() <= 4);
+    }
+
+    @Test
+    public void testApproximateAcceptance() {
+        finiteAutomaton = new FiniteAutomaton(grammar);
+
+        assertEquals(0, finiteAutomaton.editDistance("abcd", 2));
+        assertEquals(1, finiteAutomaton.editDistance("abxd", 2));   // substitution
+        assertEquals(1, finiteAutomaton.editDistance("abcdd", 2));  // deletion
+        assertEquals(1, finiteAutomaton.editDistance("acd", 2));    // insertion
+        assertEquals(2, finiteAutomaton.editDistance("", 2));
+        assertEquals(-1, finiteAutomaton.editDistance("", 1));
+        assertTrue(finiteAutomaton.acceptsWithin("bx", 1));
+        assertFalse(finiteAutomaton.acceptsWithin("xxxx", 2));
+
+        Random random = new Random(9);
+        for (int i = 0; i < 300; i++) {
+            StringBuilder input = new StringBuilder();
+            for (int j = random.nextInt(7); j > 0; j--) {
+                input.append("abcdx".charAt(random.nextInt(5)));
+            }
+            int distance = finiteAutomaton.editDistance(input.toString(), 3);
+            Optional<String> nearest = finiteAutomaton.nearestAccepted(input.toString(), 3);
+            assertEquals(distance >= 0, nearest.isPresent());
+            if (nearest.isPresent()) {
+                assertTrue(finiteAutomaton.accepts(nearest.get()));
+                assertEquals(distance, levenshtein(input.toString(), nearest.get()));
+            }
+        }
+    }
+
+    private static int levenshtein(String a, String b) {
+        int[][] d = new int[a.length() + 1][b.length() + 1];
+        for (int i = 0; i <= a.length(); i++) {
+            for (int j = 0; j <= b.length(); j++) {
+                d[i][j] = i == 0 ? j : j == 0 ? i : Math.min(Math.min(d[i - 1][j] + 1, d[i][j - 1] + 1),
+                        d[i - 1][j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1));
+            }
+        }
+        return d[a.length()][b.length()];
+    }
+
+    @Test
+    public void testLongestPrefixAndMatches() {
+        finiteAutomaton = new FiniteAutomaton(grammar);
+        String text = "xxabcdab bdzzabab";
+
+        assertEquals(6, finiteAutomaton.longestAcceptedPrefix(text, 2));
+        assertEquals(-1, finiteAutomaton.longestAcceptedPrefix(text, 0));
+        assertEquals(-1, finiteAutomaton.longestAcceptedPrefix(text, text.length()));
+        assertEquals(17, finiteAutomaton.longestAcceptedPrefix(text, 13));
+
+        List<Match> matches = finiteAutomaton.matches(text).toList();
+        assertEquals(List.of("abcd", "bd", "abab"), matches.stream().map(Match::value).toList());
+        assertEquals(2, matches.get(0).start());
+        assertEquals(6, matches.get(0).end());
+    }
+
+    @Test
+    public void testLongestPrefixStopsAtTrapState() {
+        finiteAutomaton = new FiniteAutomaton(trapGrammar());
+        CompiledAutomaton compiled = finiteAutomaton.getCompiledAutomaton();
+
+        // A can never reach a final state, so entering it is the same as dying
+        assertEquals(CompiledAutomaton.DEAD_STATE, compiled.step(compiled.getStartState(), 'a'));
+
+        String text = "a" + "b".repeat(10_000) + "c";
+        assertEquals(-1, finiteAutomaton.longestAcceptedPrefix(text, 0));
+        assertEquals(text.length(), finiteAutomaton.longestAcceptedPrefix(text, text.length() - 1));
+        assertEquals(List.of("c"), finiteAutomaton.matches(text).map(Match::value).toList());
+    }
+
+    /**
+     * S → aA | c, A → bA: A is a trap state that never reaches a final state.
+     */
+    private static Grammar trapGrammar() {
+        ProductionSymbol a = new ProductionSymbol("a", SymbolType.TERMINAL);
+        ProductionSymbol b = new ProductionSymbol("b", SymbolType.TERMINAL);
+        ProductionSymbol c = new ProductionSymbol("c", SymbolType.TERMINAL);
+        ProductionSymbol trap = new ProductionSymbol("A", SymbolType.NON_TERMINAL);
+        return new Grammar(
+                Set.of("S", "A"),
+                Set.of("a", "b", "c"),
+                "S",
+                Set.of(
+                        new Production("S", List.of(a, trap)),
+                        new Production("S", List.of(c)),
+                        new Production("A", List.of(b, trap))
+                )
+        );
+    }
+
 }
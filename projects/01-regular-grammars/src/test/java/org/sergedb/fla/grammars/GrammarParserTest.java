@@ -2,17 +2,22 @@ package org.sergedb.fla.grammars;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.sergedb.fla.grammars.automaton.FiniteAutomaton;
 import org.sergedb.fla.grammars.model.Grammar;
 import org.sergedb.fla.grammars.model.Production;
 import org.sergedb.fla.grammars.model.ProductionSymbol;
 import org.sergedb.fla.grammars.model.SymbolType;
 import org.sergedb.fla.grammars.parser.GrammarParser;
+import org.sergedb.fla.grammars.parser.GrammarSyntaxException;
 import org.sergedb.fla.grammars.processor.GrammarProcessor;
 
 import java.util.List;
 import java.util.Set;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
 
 public class GrammarParserTest {
 
@@ -78,4 +83,94 @@ public class GrammarParserTest {
         assertEquals(expected, actual);
     }
 
+    @Test
+    public void testMultiCharacterSymbols() {
+        Grammar grammar = new GrammarParser().parseFromString("""
+                V_N={S, Digits, Tail}   // non-terminals
+                V_T={id, _, 0, 1}
+                P={ S -> id Digits,
+                    Digits -> 0Digits | 1Digits | _Tail,
+                    Tail -> id | ε
+                }""");
+
+        assertEquals(Set.of("S", "Digits", "Tail"), grammar.nonTerminals());
+        assertTrue(grammar.rules().contains(new Production("Digits", List.of(
+                new ProductionSymbol("0", SymbolType.TERMINAL),
+                new ProductionSymbol("Digits", SymbolType.NON_TERMINAL)))));
+
+        FiniteAutomaton automaton = new FiniteAutomaton(grammar);
+        assertTrue(automaton.accepts("id01_"));
+        assertTrue(automaton.accepts("id1_id"));
+        assertFalse(automaton.accepts("i01_"));
+        assertFalse(automaton.accepts("id01_i"));
+    }
+
+    @Test
+    public void testBraceInCommentInsideRules() {
+        String rules = """
+                P={ S -> aS | b, // loops over {a}
+                    S -> c
+                }
+                """;
+        String symbols = """
+                V_N={S}
+                V_T={a, b, c}
+                """;
+
+        // The rules section is skipped over before the symbols are known, so both orders are covered
+        for (String definition : List.of(symbols + rules, rules + symbols)) {
+            Grammar grammar = new GrammarParser().parseFromString(definition);
+            assertEquals(3, grammar.rules().size());
+            assertTrue(grammar.rules().contains(new Production("S", List.of(
+                    new ProductionSymbol("c", SymbolType.TERMINAL)))));
+        }
+    }
+
+    @Test
+    public void testSyntaxErrorPosition() {
+        GrammarSyntaxException e = assertThrows(GrammarSyntaxException.class, () ->
+                new GrammarParser().parseFromString("""
+                        V_N={S, A}
+                        V_T={a, b}
+                        P={ S -> aA,
+                            A -> bX
+                        }"""));
+
+        assertEquals(4, e.getLine());
+        assertEquals(11, e.getColumn());
+    }
+
+    @Test
+    public void testProductionWeights() {
+        Grammar grammar = new GrammarParser().parseFromString("""
+                V_N={S}
+                V_T={a, b}
+                P={ S -> aS [0.25] | b[3] | ε }""");
+
+        ProductionSymbol a = new ProductionSymbol("a", SymbolType.TERMINAL);
+        ProductionSymbol b = new ProductionSymbol("b", SymbolType.TERMINAL);
+        assertEquals(Set.of(
+                new Production("S", List.of(a, new ProductionSymbol("S", SymbolType.NON_TERMINAL)), 0.25),
+                new Production("S", List.of(b), 3),
+                new Production("S", List.of())
+        ), grammar.rules());
+
+        assertThrows(GrammarSyntaxException.class, () -> new GrammarParser().parseFromString("""
+                V_N={S}
+                V_T={a}
+                P={ S -> a [0] }"""));
+        assertThrows(GrammarSyntaxException.class, () -> new GrammarParser().parseFromString("""
+                V_N={S}
+                V_T={a}
+                P={ S -> [2] a }"""));
+
+        // A missing bracket is reported at the weight, not as a weight spanning the following rules
+        GrammarSyntaxException e = assertThrows(GrammarSyntaxException.class, () -> new GrammarParser().parseFromString("""
+                V_N={S}
+                V_T={a, b}
+                P={ S -> a [2 | b,
+                    S -> a [3] }"""));
+        assertTrue(e.getMessage(), e.getMessage().contains("Missing ']'"));
+    }
+
 }
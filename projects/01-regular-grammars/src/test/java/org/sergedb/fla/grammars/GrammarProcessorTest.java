@@ -0,0 +1,141 @@
+package org.sergedb.fla.grammars;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sergedb.fla.grammars.automaton.FiniteAutomaton;
+import org.sergedb.fla.grammars.model.Grammar;
+import org.sergedb.fla.grammars.parser.GrammarParser;
+import org.sergedb.fla.grammars.processor.GrammarProcessor;
+import org.sergedb.fla.grammars.processor.UniformSampler;
+
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.junit.Assert.*;
+
+public class GrammarProcessorTest {
+
+    private Grammar grammar;
+    private FiniteAutomaton automaton;
+
+    @Before
+    public void setUp() {
+        grammar = new GrammarParser().parseFromString("""
+                V_N={S, B, D}
+                V_T={a, b, c, d}
+                P={ S -> aS | bB,
+                    B -> cB | d | aD,
+                    D -> aB | b
+                }""");
+        automaton = new FiniteAutomaton(grammar);
+    }
+
+    @Test
+    public void testUniformSamplerCoversLanguageEvenly() {
+        UniformSampler sampler = new UniformSampler(grammar, 5);
+        List<String> language = automaton.getAcceptedStrings(5).stream()
+                .filter(str -> str.length() == 5)
+                .toList();
+        assertEquals(BigInteger.valueOf(language.size()), sampler.getLanguageSize());
+
+        int draws = 40_000;
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String sample : sampler.sample(draws, 42)) {
+            frequencies.merge(sample, 1, Integer::sum);
+        }
+
+        double expected = (double) draws / language.size();
+        assertEquals(language.size(), frequencies.size());
+        for (String str : language) {
+            assertEquals(str, expected, frequencies.get(str), expected * 0.15);
+        }
+    }
+
+    @Test
+    public void testUniformSamplerIsReproducibleForLongStrings() {
+        // Long enough for the path counts to overflow a long
+        UniformSampler sampler = new UniformSampler(grammar, 150);
+        assertTrue(sampler.getLanguageSize().bitLength() > 63);
+
+        List<String> samples = sampler.sample(50, 7);
+        assertEquals(samples, sampler.sample(50, 7));
+        for (String sample : samples) {
+            assertEquals(150, sample.length());
+            assertTrue(automaton.accepts(sample));
+        }
+        assertTrue(automaton.accepts(sampler.sample(new SplittableRandom())));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testUniformSamplerWithoutStringsOfLength() {
+        new UniformSampler(grammar, 1).sample(new SplittableRandom());
+    }
+
+    @Test
+    public void testParallelGenerationIsReproducible() {
+        GrammarProcessor processor = new GrammarProcessor(grammar);
+
+        List<String> strings = processor.generateStrings(5000, 123);
+        assertEquals(5000, strings.size());
+        assertEquals(strings, processor.generateStrings(5000, 123));
+        assertEquals(strings.size(), automaton.acceptsAll(strings).cardinality());
+    }
+
+    @Test
+    public void testDerivationDepthIsBounded() {
+        // S -> aS recurses forever, so every derivation has to be abandoned
+        Grammar looping = new GrammarParser().parseFromString("""
+                V_N={S}
+                V_T={a}
+                P={ S -> aS }""");
+        GrammarProcessor processor = new GrammarProcessor(looping, 50);
+
+        assertThrows(IllegalStateException.class, processor::generateString);
+    }
+
+    @Test
+    public void testWeightedProductions() {
+        Grammar weighted = new GrammarParser().parseFromString("""
+                V_N={S}
+                V_T={a, b, c}
+                P={ S -> a [6] | b [3] | c }""");
+        GrammarProcessor processor = new GrammarProcessor(weighted);
+
+        Map<String, Integer> counts = new HashMap<>();
+        for (String str : processor.generateStrings(100_000, 42)) {
+            counts.merge(str, 1, Integer::sum);
+        }
+        assertEquals(0.6, counts.get("a") / 100_000.0, 0.01);
+        assertEquals(0.3, counts.get("b") / 100_000.0, 0.01);
+        assertEquals(0.1, counts.get("c") / 100_000.0, 0.01);
+    }
+
+    @Test
+    public void testSelfValidation() throws InterruptedException {
+        ValidationReport report = new SelfValidation(new GrammarProcessor(grammar), automaton, 2, 2)
+                .run(50_000, 7);
+
+        assertEquals(50_000, report.generated());
+        assertEquals(0, report.rejected());
+        assertTrue(report.p50Nanos() <= report.p99Nanos());
+        assertTrue(report.stringsPerSecond() > 0);
+    }
+
+    @Test(timeout = 30_000)
+    public void testSelfValidationFailsFastWhenCheckingThrows() {
+        FiniteAutomaton broken = new FiniteAutomaton(grammar) {
+            @Override
+            public boolean accepts(String input) {
+                throw new IllegalStateException("broken automaton");
+            }
+        };
+        SelfValidation validation = new SelfValidation(new GrammarProcessor(grammar), broken, 2, 1);
+
+        // Far more batches than the queue holds, so the producers would block forever without the fail-fast path
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> validation.run(1_000_000, 7));
+        assertEquals("broken automaton", e.getMessage());
+    }
+}
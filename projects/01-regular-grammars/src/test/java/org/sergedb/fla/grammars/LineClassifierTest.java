@@ -0,0 +1,154 @@
+package org.sergedb.fla.grammars;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sergedb.fla.grammars.automaton.FiniteAutomaton;
+import org.sergedb.fla.grammars.interactive.StringTester;
+import org.sergedb.fla.grammars.interactive.TraceSummary;
+import org.sergedb.fla.grammars.model.Grammar;
+import org.sergedb.fla.grammars.parser.GrammarParser;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LineClassifierTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private FiniteAutomaton automaton;
+
+    @Before
+    public void setUp() {
+        Grammar grammar = new GrammarParser().parseFromString("""
+                V_N={S, B, D}
+                V_T={a, b, c, d}
+                P={ S -> aS | bB,
+                    B -> cB | d | aD,
+                    D -> aB | b
+                }""");
+        automaton = new FiniteAutomaton(grammar);
+    }
+
+    @Test
+    public void testClassifyMatchesAccepts() throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            lines.add(switch (i % 5) {
+                case 0 -> "a".repeat(i % 11) + "bd";
+                case 1 -> "bc" + "é".repeat(i % 3) + "d";
+                case 2 -> "";
+                case 3 -> "ab" + "c".repeat(i % 13) + "ab";
+                default -> "bcd\r";
+            });
+        }
+        Path input = folder.newFile("input.txt").toPath();
+        Files.writeString(input, String.join("\n", lines) + "\n", StandardCharsets.UTF_8);
+        Path bitmap = folder.getRoot().toPath().resolve("accepted.bin");
+
+        // A tiny chunk size forces many chunks and line-boundary adjustments
+        ClassificationResult result = new LineClassifier(automaton.getCompiledAutomaton(), 100)
+                .classify(input, bitmap);
+
+        BitSet expected = new BitSet();
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).endsWith("\r") ? lines.get(i).substring(0, lines.get(i).length() - 1) : lines.get(i);
+            if (automaton.accepts(line)) {
+                expected.set(i);
+            }
+        }
+
+        assertEquals(lines.size(), result.lines());
+        assertEquals(expected.cardinality(), result.accepted());
+        assertEquals(expected, BitSet.valueOf(Files.readAllBytes(bitmap)));
+    }
+
+    @Test
+    public void testMalformedUtf8IsRejectedLikeAccepts() throws IOException {
+        byte[][] lines = {
+                {'b', 'c', 'd'},
+                {'b', (byte) 0xC1, (byte) 0xA3, 'd'},                           // overlong 'c'
+                {'b', (byte) 0xE0, (byte) 0x81, (byte) 0xA3, 'd'},              // three-byte overlong 'c'
+                {'b', (byte) 0xF0, (byte) 0x80, (byte) 0x81, (byte) 0xA3, 'd'}, // four-byte overlong 'c'
+                {'b', 'c', (byte) 0xED, (byte) 0xA0, (byte) 0x80, 'd'},         // encoded high surrogate
+                {'b', (byte) 0xF5, (byte) 0x80, (byte) 0x80, (byte) 0x80, 'd'}, // lead byte beyond U+10FFFF
+                {'b', (byte) 0x80, 'd'}                                         // stray continuation byte
+        };
+        Path input = folder.newFile("malformed.txt").toPath();
+        try (OutputStream out = Files.newOutputStream(input)) {
+            for (byte[] line : lines) {
+                out.write(line);
+                out.write('\n');
+            }
+        }
+        Path bitmap = folder.getRoot().toPath().resolve("malformed.bin");
+
+        ClassificationResult result = new LineClassifier(automaton.getCompiledAutomaton()).classify(input, bitmap);
+
+        BitSet expected = new BitSet();
+        for (int i = 0; i < lines.length; i++) {
+            if (automaton.accepts(new String(lines[i], StandardCharsets.UTF_8))) {
+                expected.set(i);
+            }
+        }
+        assertEquals(1, expected.cardinality());
+        assertEquals(lines.length, result.lines());
+        assertEquals(expected, BitSet.valueOf(Files.readAllBytes(bitmap)));
+    }
+
+    @Test
+    public void testTraceRejectedLines() throws IOException {
+        Path input = folder.newFile("batch.txt").toPath();
+        Files.writeString(input, "abcd\nabx\nab\nbd\nbb\n", StandardCharsets.UTF_8);
+        Path output = folder.getRoot().toPath().resolve("traces.txt");
+
+        TraceSummary summary = new StringTester(automaton).traceRejected(input, output);
+
+        assertEquals(5, summary.inputs());
+        assertEquals(3, summary.rejected());
+        List<String> traces = Files.readAllLines(output, StandardCharsets.UTF_8);
+        assertTrue(traces.get(0).startsWith("# states:"));
+        assertEquals(4, traces.size());
+        assertTrue(traces.get(1).matches("2\tSYMBOL@2\t\\d+ \\d+ \\d+\tabx"));
+        assertTrue(traces.get(2).matches("3\tNONFINAL@2\t\\d+ \\d+ \\d+\tab"));
+        assertTrue(traces.get(3).matches("5\tDEAD@1\t\\d+ \\d+\tbb"));
+    }
+
+    @Test
+    public void testTraceLineNumbersMatchClassify() throws IOException {
+        // A lone '\r' is content for both, only "\n" and "\r\n" end a line
+        Path input = folder.newFile("carriage.txt").toPath();
+        Files.writeString(input, "bd\rbd\nbd\r\nab\nbb", StandardCharsets.UTF_8);
+        Path output = folder.getRoot().toPath().resolve("carriage-traces.txt");
+        Path bitmap = folder.getRoot().toPath().resolve("carriage.bin");
+
+        TraceSummary summary = new StringTester(automaton).traceRejected(input, output);
+        ClassificationResult result = new LineClassifier(automaton.getCompiledAutomaton()).classify(input, bitmap);
+
+        BitSet rejected = new BitSet();
+        rejected.set(0, (int) result.lines());
+        rejected.andNot(BitSet.valueOf(Files.readAllBytes(bitmap)));
+        BitSet traced = new BitSet();
+        // Traces hold the raw input, so they too are split on '\n' only
+        for (String trace : Files.readString(output, StandardCharsets.UTF_8).split("\n")) {
+            if (!trace.startsWith("#")) {
+                traced.set(Integer.parseInt(trace.substring(0, trace.indexOf('\t'))) - 1);
+            }
+        }
+
+        assertEquals(result.lines(), summary.inputs());
+        assertEquals(4, summary.inputs());
+        assertEquals(rejected, traced);
+    }
+}
@@ -1,6 +1,7 @@
 package org.sergedb.fla.automata;
 
 import org.sergedb.fla.automata.model.Automaton;
+import org.sergedb.fla.automata.model.DeterminismReport;
 import org.sergedb.fla.automata.model.Grammar;
 import org.sergedb.fla.automata.parser.AutomatonParser;
 import org.sergedb.fla.automata.processor.AutomatonProcessor;
@@ -33,11 +34,8 @@ public class Runner {
             System.out.println(automaton.toString());
 
             System.out.println("\n--- AUTOMATON PROPERTIES ---");
-            if (automaton.isDeterministic()) {
-                System.out.println("The automaton is Deterministic (DFA).\n");
-            } else {
-                System.out.println("The automaton is Non-Deterministic (NDFA).\n");
-            }
+            DeterminismReport report = automaton.determinismReport();
+            System.out.println("The automaton is " + report + "\n");
 
             // Process automaton
             AutomatonProcessor processor = new AutomatonProcessor();
@@ -1,17 +1,70 @@
 package org.sergedb.fla.automata.model;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
 import java.util.Set;
-import java.util.stream.Collectors;
 
+/**
+ * Represents a finite automaton (Q, Σ, δ, q0, F).
+ * <p>
+ * Besides the transitions as a set, the record carries a {@link TransitionIndex} built from them,
+ * which the lookups and conversions use instead of scanning the whole transition set. The index is
+ * derived data and ignored by {@link #equals(Object)} and {@link #hashCode()}; it is a public component
+ * because the processors in other packages work on its int ids directly. The sets are copied on
+ * construction, so the index cannot go stale. When no index is given it is built from the copied sets;
+ * an index passed to the canonical constructor must describe exactly the given states, alphabet and
+ * transitions, which is checked only in that case.
+ */
 public record Automaton(
         Set<String> states,
         Set<String> alphabet,
         String initialState,
         Set<String> finalStates,
-        Set<Transition> transitions
+        Set<Transition> transitions,
+        TransitionIndex index
 ) {
 
+    public Automaton {
+        states = copyOf(states);
+        alphabet = copyOf(alphabet);
+        finalStates = copyOf(finalStates);
+        transitions = copyOf(transitions);
+        index = index == null
+                ? TransitionIndex.of(states, alphabet, transitions)
+                : checkedIndex(index, states, alphabet, transitions);
+    }
+
+    public Automaton(Set<String> states, Set<String> alphabet, String initialState,
+                     Set<String> finalStates, Set<Transition> transitions) {
+        this(states, alphabet, initialState, finalStates, transitions, null);
+    }
+
+    /**
+     * Checks that a caller-supplied index describes the automaton.
+     *
+     * @return The index itself
+     * @throws IllegalArgumentException If the index was built from different data
+     */
+    private static TransitionIndex checkedIndex(TransitionIndex index, Set<String> states, Set<String> alphabet,
+                                                Set<Transition> transitions) {
+        if (!index.describes(states, alphabet, transitions)) {
+            throw new IllegalArgumentException("Transition index does not match the transitions of the automaton");
+        }
+        return index;
+    }
+
+    /**
+     * Copies a set into an unmodifiable one, keeping its iteration order for display.
+     */
+    private static <T> Set<T> copyOf(Set<T> set) {
+        return Collections.unmodifiableSet(new LinkedHashSet<>(set));
+    }
+
     /**
      * Gets all target states for a given state and symbol.
      * The Transition record is (fromState, toState, symbol).
@@ -21,10 +74,17 @@ public record Automaton(
      * @return A set of target states. Returns an empty set if no such transitions exist.
      */
     public Set<String> getTransitions(String fromState, String symbol) {
-        return transitions.stream()
-                .filter(t -> t.fromState().equals(fromState) && t.symbol().equals(symbol))
-                .map(Transition::toState)
-                .collect(Collectors.toSet());
+        int state = index.stateId(fromState);
+        int symbolId = index.symbolId(symbol);
+        if (state < 0 || symbolId < 0) {
+            return Set.of();
+        }
+
+        Set<String> targets = new HashSet<>();
+        for (int i = index.targetsStart(state, symbolId); i < index.targetsEnd(state, symbolId); i++) {
+            targets.add(index.stateName(index.target(i)));
+        }
+        return targets;
     }
 
     /**
@@ -32,24 +92,24 @@ public record Automaton(
      * An automaton is deterministic if:
      * 1. There are no epsilon transitions.
      * 2. For every state and for every input symbol, there is exactly one transition.
+     * <p>
+     * Reads the target count of every (state, symbol) pair from the transition index once
+     * and stops at the first violation.
      *
      * @return true if the automaton is a DFA, false otherwise (i.e., it's an NDFA).
      */
     public boolean isDeterministic() {
-        // Check for epsilon transitions
-        boolean hasEpsilonTransitions = transitions.stream()
-                .anyMatch(t -> t.symbol().equals(Transition.EPSILON));
-        if (hasEpsilonTransitions) {
-            return false; // Condition 1 violated
+        int epsilon = index.epsilonSymbol();
+        for (int state = 0; epsilon >= 0 && state < index.stateCount(); state++) {
+            if (index.targetCount(state, epsilon) > 0) {
+                return false; // Condition 1 violated
+            }
         }
-
-        // Check for unique transitions for each state and symbol
+        int[] symbols = alphabetIds();
         for (String state : states) {
-            for (String symbol : alphabet) {
-                long count = transitions.stream()
-                        .filter(t -> t.fromState().equals(state) && t.symbol().equals(symbol))
-                        .count();
-                if (count != 1) {
+            int stateId = index.stateId(state);
+            for (int symbol : symbols) {
+                if (index.targetCount(stateId, symbol) != 1) {
                     return false; // Condition 2 violated (either 0 or more than 1 transition)
                 }
             }
@@ -58,6 +118,67 @@ public record Automaton(
         return true; // All conditions for DFA met
     }
 
+    /**
+     * Describes which conditions for determinism the automaton violates.
+     * <p>
+     * Computed in a single pass over the target counts of every (state, symbol) pair.
+     *
+     * @return The missing and duplicated pairs and the number of epsilon transitions
+     */
+    public DeterminismReport determinismReport() {
+        int epsilon = index.epsilonSymbol();
+        int[] symbols = alphabetIds();
+        List<DeterminismReport.Pair> missing = new ArrayList<>();
+        List<DeterminismReport.Pair> duplicated = new ArrayList<>();
+        int epsilonTransitions = 0;
+
+        for (int state = 0; state < index.stateCount(); state++) {
+            if (epsilon >= 0) {
+                epsilonTransitions += index.targetCount(state, epsilon);
+            }
+            if (!states.contains(index.stateName(state))) {
+                continue;
+            }
+            for (int symbol : symbols) {
+                int count = index.targetCount(state, symbol);
+                if (count == 0) {
+                    missing.add(new DeterminismReport.Pair(index.stateName(state), index.symbol(symbol)));
+                } else if (count > 1) {
+                    duplicated.add(new DeterminismReport.Pair(index.stateName(state), index.symbol(symbol)));
+                }
+            }
+        }
+        return new DeterminismReport(missing, duplicated, epsilonTransitions);
+    }
+
+    /**
+     * Gets the ids of the input symbols, in sorted order and without epsilon.
+     *
+     * @return The symbol ids of the alphabet
+     */
+    private int[] alphabetIds() {
+        return alphabet.stream()
+                .filter(symbol -> !symbol.equals(Transition.EPSILON))
+                .mapToInt(index::symbolId)
+                .sorted()
+                .toArray();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Automaton other
+                && states.equals(other.states)
+                && alphabet.equals(other.alphabet)
+                && Objects.equals(initialState, other.initialState)
+                && finalStates.equals(other.finalStates)
+                && transitions.equals(other.transitions);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(states, alphabet, initialState, finalStates, transitions);
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
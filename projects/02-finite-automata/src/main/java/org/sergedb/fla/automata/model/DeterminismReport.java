@@ -0,0 +1,83 @@
+package org.sergedb.fla.automata.model;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Record class describing how far an automaton is from being deterministic.
+ * <p>
+ * An automaton is deterministic if it has no epsilon transitions and exactly one transition for
+ * every state and input symbol. Without duplicated pairs and epsilon transitions, but with some
+ * pairs missing, it is partially deterministic: every input has at most one run.
+ *
+ * @param missing            The (state, symbol) pairs without a transition, in sorted order
+ * @param duplicated         The (state, symbol) pairs with more than one target, in sorted order
+ * @param epsilonTransitions The number of epsilon transitions
+ */
+public record DeterminismReport(List<Pair> missing, List<Pair> duplicated, int epsilonTransitions) {
+    private static final int PRINTED_PAIRS = 10;
+
+    public DeterminismReport {
+        missing = List.copyOf(missing);
+        duplicated = List.copyOf(duplicated);
+    }
+
+    /**
+     * A state and an input symbol.
+     *
+     * @param state  The state
+     * @param symbol The input symbol
+     */
+    public record Pair(String state, String symbol) {
+        @Override
+        public String toString() {
+            return "(" + state + ", " + symbol + ")";
+        }
+    }
+
+    /**
+     * Checks if the automaton is a complete DFA.
+     *
+     * @return True if every pair has exactly one transition and there are no epsilon transitions
+     */
+    public boolean isDeterministic() {
+        return isPartiallyDeterministic() && isComplete();
+    }
+
+    /**
+     * Checks if every pair has at most one transition and there are no epsilon transitions.
+     *
+     * @return True if the automaton is deterministic, possibly with missing transitions
+     */
+    public boolean isPartiallyDeterministic() {
+        return duplicated.isEmpty() && epsilonTransitions == 0;
+    }
+
+    /**
+     * Checks if every pair has at least one transition.
+     *
+     * @return True if no pair is missing
+     */
+    public boolean isComplete() {
+        return missing.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        String kind = isDeterministic() ? "Deterministic (DFA)"
+                : isPartiallyDeterministic() ? "Partially deterministic (DFA with missing transitions)"
+                : "Non-deterministic (NDFA)";
+        return kind +
+                "\n  Missing transitions: " + missing.size() + format(missing) +
+                "\n  Duplicated transitions: " + duplicated.size() + format(duplicated) +
+                "\n  Epsilon transitions: " + epsilonTransitions;
+    }
+
+    private static String format(List<Pair> pairs) {
+        if (pairs.isEmpty()) {
+            return "";
+        }
+        String shown = pairs.stream().limit(PRINTED_PAIRS).map(Pair::toString).collect(Collectors.joining(", "));
+        return " [" + shown + (pairs.size() > PRINTED_PAIRS ? ", ..." : "") + "]";
+    }
+}
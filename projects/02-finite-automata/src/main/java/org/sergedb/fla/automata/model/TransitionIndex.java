@@ -0,0 +1,253 @@
+package org.sergedb.fla.automata.model;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Adjacency index over the transitions of an {@link Automaton}, built once per automaton.
+ * <p>
+ * States and symbols are coded as dense integers in sorted order of their names, and the targets of
+ * every (state, symbol) pair are stored contiguously in compressed sparse row form:
+ * <pre>
+ * targets[offsets[state * symbolCount + symbol] .. offsets[state * symbolCount + symbol + 1])
+ * </pre>
+ * holds the sorted, distinct target ids of the pair. Looking up the targets of a pair is therefore
+ * two array reads instead of a scan over every transition. The epsilon symbol, if any transition
+ * uses it, gets a symbol id of its own.
+ * <p>
+ * Instances are immutable and can be shared between threads.
+ */
+public final class TransitionIndex {
+    private final String[] stateNames;
+    private final String[] symbols;
+    private final Map<String, Integer> stateIds;
+    private final Map<String, Integer> symbolIds;
+    private final int epsilonSymbol;
+    private final int[] offsets;
+    private final int[] targets;
+
+    private TransitionIndex(String[] stateNames, String[] symbols, int[] offsets, int[] targets) {
+        this.stateNames = stateNames;
+        this.symbols = symbols;
+        this.stateIds = indexOf(stateNames);
+        this.symbolIds = indexOf(symbols);
+        this.epsilonSymbol = symbolIds.getOrDefault(Transition.EPSILON, -1);
+        this.offsets = offsets;
+        this.targets = targets;
+    }
+
+    private static Map<String, Integer> indexOf(String[] names) {
+        Map<String, Integer> ids = new HashMap<>(names.length * 2);
+        for (int i = 0; i < names.length; i++) {
+            ids.put(names[i], i);
+        }
+        return ids;
+    }
+
+    /**
+     * Builds the index of a set of transitions.
+     * <p>
+     * States and symbols that only occur in transitions are indexed as well.
+     *
+     * @param states      The states of the automaton
+     * @param alphabet    The input symbols of the automaton
+     * @param transitions The transitions to index
+     * @return The index
+     */
+    public static TransitionIndex of(Collection<String> states, Collection<String> alphabet,
+                                     Collection<Transition> transitions) {
+        TreeSet<String> stateSet = new TreeSet<>(states);
+        TreeSet<String> symbolSet = new TreeSet<>(alphabet);
+        for (Transition transition : transitions) {
+            stateSet.add(transition.fromState());
+            stateSet.add(transition.toState());
+            symbolSet.add(transition.symbol());
+        }
+        String[] stateNames = stateSet.toArray(new String[0]);
+        String[] symbols = symbolSet.toArray(new String[0]);
+        Map<String, Integer> stateIds = indexOf(stateNames);
+        Map<String, Integer> symbolIds = indexOf(symbols);
+        int symbolCount = symbols.length;
+        int pairs = Math.multiplyExact(stateNames.length, symbolCount);
+
+        // Counting sort of the transitions by (state, symbol), then by target within each pair
+        int[] pairOf = new int[transitions.size()];
+        int[] targetOf = new int[transitions.size()];
+        int[] offsets = new int[pairs + 1];
+        int count = 0;
+        for (Transition transition : transitions) {
+            int pair = stateIds.get(transition.fromState()) * symbolCount + symbolIds.get(transition.symbol());
+            pairOf[count] = pair;
+            targetOf[count++] = stateIds.get(transition.toState());
+            offsets[pair + 1]++;
+        }
+        for (int pair = 0; pair < pairs; pair++) {
+            offsets[pair + 1] += offsets[pair];
+        }
+        int[] sorted = new int[count];
+        int[] fill = Arrays.copyOf(offsets, pairs);
+        for (int i = 0; i < count; i++) {
+            sorted[fill[pairOf[i]]++] = targetOf[i];
+        }
+
+        // Sort and deduplicate the targets of every pair in place
+        int[] compactOffsets = new int[pairs + 1];
+        int size = 0;
+        for (int pair = 0; pair < pairs; pair++) {
+            Arrays.sort(sorted, offsets[pair], offsets[pair + 1]);
+            for (int i = offsets[pair]; i < offsets[pair + 1]; i++) {
+                if (i == offsets[pair] || sorted[i] != sorted[i - 1]) {
+                    sorted[size++] = sorted[i];
+                }
+            }
+            compactOffsets[pair + 1] = size;
+        }
+
+        return new TransitionIndex(stateNames, symbols, compactOffsets, Arrays.copyOf(sorted, size));
+    }
+
+    /**
+     * Checks whether this index was built from exactly the given states, alphabet and transitions.
+     *
+     * @param states      The states of the automaton
+     * @param alphabet    The input symbols of the automaton
+     * @param transitions The transitions of the automaton, without duplicates
+     * @return True if {@link #of} would build an equivalent index from them
+     */
+    public boolean describes(Collection<String> states, Collection<String> alphabet,
+                             Collection<Transition> transitions) {
+        Set<String> stateSet = new HashSet<>(states);
+        Set<String> symbolSet = new HashSet<>(alphabet);
+        for (Transition transition : transitions) {
+            stateSet.add(transition.fromState());
+            stateSet.add(transition.toState());
+            symbolSet.add(transition.symbol());
+
+            int from = stateId(transition.fromState());
+            int symbol = symbolId(transition.symbol());
+            int to = stateId(transition.toState());
+            if (from < 0 || symbol < 0 || to < 0
+                    || Arrays.binarySearch(targets, targetsStart(from, symbol), targetsEnd(from, symbol), to) < 0) {
+                return false;
+            }
+        }
+        return targets.length == transitions.size()
+                && stateIds.keySet().equals(stateSet)
+                && symbolIds.keySet().equals(symbolSet);
+    }
+
+    /**
+     * Gets the id of a state.
+     *
+     * @param state The state name
+     * @return The state id, or -1 if the state is unknown
+     */
+    public int stateId(String state) {
+        return stateIds.getOrDefault(state, -1);
+    }
+
+    /**
+     * Gets the id of a symbol.
+     *
+     * @param symbol The symbol
+     * @return The symbol id, or -1 if the symbol is unknown
+     */
+    public int symbolId(String symbol) {
+        return symbolIds.getOrDefault(symbol, -1);
+    }
+
+    /**
+     * Gets the name of a state.
+     *
+     * @param state The state id
+     * @return The state name
+     */
+    public String stateName(int state) {
+        return stateNames[state];
+    }
+
+    /**
+     * Gets a symbol by id.
+     *
+     * @param symbol The symbol id
+     * @return The symbol
+     */
+    public String symbol(int symbol) {
+        return symbols[symbol];
+    }
+
+    /**
+     * Gets the number of indexed states.
+     *
+     * @return The number of states
+     */
+    public int stateCount() {
+        return stateNames.length;
+    }
+
+    /**
+     * Gets the number of indexed symbols, including epsilon if it is used.
+     *
+     * @return The number of symbols
+     */
+    public int symbolCount() {
+        return symbols.length;
+    }
+
+    /**
+     * Gets the id of the epsilon symbol.
+     *
+     * @return The symbol id of {@link Transition#EPSILON}, or -1 if no transition uses it
+     */
+    public int epsilonSymbol() {
+        return epsilonSymbol;
+    }
+
+    /**
+     * Gets the position of the first target of a (state, symbol) pair.
+     *
+     * @param state  The state id
+     * @param symbol The symbol id
+     * @return Index of the first target, for use with {@link #target(int)}
+     */
+    public int targetsStart(int state, int symbol) {
+        return offsets[state * symbols.length + symbol];
+    }
+
+    /**
+     * Gets the position after the last target of a (state, symbol) pair.
+     *
+     * @param state  The state id
+     * @param symbol The symbol id
+     * @return Index after the last target, for use with {@link #target(int)}
+     */
+    public int targetsEnd(int state, int symbol) {
+        return offsets[state * symbols.length + symbol + 1];
+    }
+
+    /**
+     * Gets a target state by its position in the index.
+     *
+     * @param position A position between {@link #targetsStart} and {@link #targetsEnd}
+     * @return The target state id
+     */
+    public int target(int position) {
+        return targets[position];
+    }
+
+    /**
+     * Counts the targets of a (state, symbol) pair.
+     *
+     * @param state  The state id
+     * @param symbol The symbol id
+     * @return The number of distinct target states
+     */
+    public int targetCount(int state, int symbol) {
+        return targetsEnd(state, symbol) - targetsStart(state, symbol);
+    }
+}
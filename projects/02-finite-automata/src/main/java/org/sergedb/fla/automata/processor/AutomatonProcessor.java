@@ -3,8 +3,18 @@ package org.sergedb.fla.automata.processor;
 import org.sergedb.fla.automata.model.*;
 
 import java.util.*;
+import java.util.concurrent.*;
 
 public class AutomatonProcessor {
+    /**
+     * Minimum number of NFA states for {@link #determinize(Automaton, int)} to use worker threads.
+     */
+    public static final int PARALLEL_MIN_NFA_STATES = 64;
+
+    /**
+     * Minimum number of DFA states in a breadth-first level for it to be expanded by worker threads.
+     */
+    public static final int PARALLEL_MIN_LEVEL_SIZE = 256;
 
     /**
      * Converts a finite automaton to a regular grammar.
@@ -43,95 +53,313 @@ public class AutomatonProcessor {
 
     /**
      * Converts a non-deterministic finite automaton (NDFA) to a deterministic finite automaton (DFA).
+     * <p>
+     * DFA states are named after their members in sorted order, separated by commas. The empty subset
+     * is left out, so pairs that lead to it have no transition.
      *
      * @param automaton The non-deterministic finite automaton to convert.
      * @return The equivalent deterministic finite automaton.
+     * @see #determinize(Automaton)
      */
     public Automaton convertToDFA(Automaton automaton) {
-        Set<Set<String>> dfaStates = new HashSet<>();
-        Map<Set<String>, Map<String, Set<String>>> dfaTransitions = new HashMap<>();
+        DfaTable table = determinize(automaton);
+
+        String[] names = new String[table.stateCount()];
+        for (int state = 0; state < names.length; state++) {
+            names[state] = table.stateName(state);
+        }
+
+        Set<Transition> dfaTransitionSet = new HashSet<>();
         Set<String> dfaFinalStates = new HashSet<>();
+        for (int state = 0; state < names.length; state++) {
+            for (int symbol = 0; symbol < table.symbolCount(); symbol++) {
+                int target = table.transition(state, symbol);
+                if (target != DfaTable.NO_STATE) {
+                    dfaTransitionSet.add(new Transition(names[state], names[target], table.symbol(symbol)));
+                }
+            }
+            if (table.isAccepting(state)) {
+                dfaFinalStates.add(names[state]);
+            }
+        }
+
+        return new Automaton(new HashSet<>(Arrays.asList(names)), automaton.alphabet(),
+                names[table.initialState()], dfaFinalStates, dfaTransitionSet);
+    }
+
+    /**
+     * Runs the subset construction of an automaton into an int-indexed transition table.
+     * <p>
+     * NFA states are the int ids of the automaton's {@link TransitionIndex}, and every subset is a
+     * {@link StateSet} of sorted ids with a cached hash, so a lookup hashes the ids once and no state
+     * names are built. Every move and epsilon-closure follows the index, reusing one scratch buffer
+     * and marking visited states with a generation stamp instead of allocating a set per step.
+     *
+     * @param automaton The automaton to determinize.
+     * @return The transition table of the equivalent DFA.
+     */
+    public DfaTable determinize(Automaton automaton) {
+        return determinize(automaton, 1);
+    }
+
+    /**
+     * Gets the index id of the initial state of an automaton.
+     *
+     * @param automaton The automaton.
+     * @return The id of the initial state.
+     * @throws IllegalArgumentException if the initial state is neither in Q nor in any transition.
+     */
+    static int initialStateId(Automaton automaton) {
+        int state = automaton.index().stateId(automaton.initialState());
+        if (state < 0) {
+            throw new IllegalArgumentException("Unknown initial state: " + automaton.initialState());
+        }
+        return state;
+    }
+
+    /**
+     * Gets the index ids of the final states of an automaton. Final states that are neither in Q nor
+     * in any transition can never be reached, so they are skipped.
+     *
+     * @param automaton The automaton.
+     * @return The ids of the known final states.
+     */
+    static BitSet finalStateIds(Automaton automaton) {
+        TransitionIndex index = automaton.index();
+        BitSet finalIds = new BitSet();
+        for (String state : automaton.finalStates()) {
+            int id = index.stateId(state);
+            if (id >= 0) {
+                finalIds.set(id);
+            }
+        }
+        return finalIds;
+    }
+
+    /**
+     * Runs the subset construction with the given number of worker threads.
+     * <p>
+     * The DFA is explored level by level in breadth-first order. The moves of all states of a level
+     * are independent, so large levels are split into chunks that the workers expand concurrently,
+     * each with its own scratch space, looking up known subsets in a concurrent map and merging
+     * duplicate new subsets of the chunk. New subsets are then numbered on the calling thread in
+     * (state, symbol) order, which is the order a sequential breadth-first search discovers them in:
+     * the table is identical for every number of threads. With one thread, for automata with fewer
+     * than {@value #PARALLEL_MIN_NFA_STATES} states and for levels with fewer than
+     * {@value #PARALLEL_MIN_LEVEL_SIZE} states, every move is numbered as soon as it is computed.
+     *
+     * @param automaton The automaton to determinize.
+     * @param threads   The number of worker threads; 1 runs the sequential construction.
+     * @return The transition table of the equivalent DFA.
+     * @throws IllegalArgumentException if threads is not positive or the initial state is unknown.
+     * @throws IllegalStateException    if the calling thread is interrupted while waiting for the workers.
+     */
+    public DfaTable determinize(Automaton automaton, int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Thread count must be positive");
+        }
+        TransitionIndex index = automaton.index();
+        int[] symbols = automaton.alphabet().stream()
+                .filter(symbol -> !symbol.equals(Transition.EPSILON))
+                .mapToInt(index::symbolId)
+                .sorted()
+                .toArray();
+        int symbolCount = symbols.length;
+
+        BitSet finalIds = finalStateIds(automaton);
+
+        Subsets subsets = new Subsets(index);
+        Construction dfa = new Construction(symbolCount, finalIds);
 
         // Start with the epsilon-closure of the initial state
-        Set<String> initialState = epsilonClosure(Set.of(automaton.initialState()), automaton);
-        dfaStates.add(initialState);
-
-        Queue<Set<String>> queue = new LinkedList<>();
-        queue.add(initialState);
-
-        while (!queue.isEmpty()) {
-            Set<String> currentState = queue.poll();
-            Map<String, Set<String>> transitions = new HashMap<>();
-
-            for (String symbol : automaton.alphabet()) {
-                if (symbol.equals(Transition.EPSILON)) continue;
-
-                // Compute the epsilon-closure of the move
-                Set<String> move = epsilonClosure(move(currentState, symbol, automaton), automaton);
-                if (!move.isEmpty()) {
-                    transitions.put(symbol, move);
-                    if (!dfaStates.contains(move)) {
-                        dfaStates.add(move);
-                        queue.add(move);
+        dfa.intern(subsets.closure(initialStateId(automaton)));
+
+        boolean parallel = threads > 1 && index.stateCount() >= PARALLEL_MIN_NFA_STATES;
+        ExecutorService executor = parallel ? Executors.newFixedThreadPool(threads) : null;
+        try {
+            int current = 0;
+            while (current < dfa.states.size()) {
+                int levelEnd = dfa.states.size();
+                if (executor != null && levelEnd - current >= PARALLEL_MIN_LEVEL_SIZE) {
+                    for (Chunk chunk : expandParallel(current, levelEnd, dfa, symbols, index, executor, threads)) {
+                        chunk.number(dfa);
+                    }
+                    current = levelEnd;
+                    continue;
+                }
+
+                // States are numbered in discovery order, so the list doubles as the queue
+                for (; current < levelEnd; current++) {
+                    StateSet currentState = dfa.states.get(current);
+                    for (int symbol = 0; symbol < symbolCount; symbol++) {
+                        StateSet move = subsets.move(currentState, symbols[symbol]);
+                        dfa.setTransition(current, symbol, move.size() > 0 ? dfa.intern(move) : DfaTable.NO_STATE);
                     }
                 }
             }
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
 
-            dfaTransitions.put(currentState, transitions);
+        String[] symbolNames = new String[symbolCount];
+        for (int symbol = 0; symbol < symbolCount; symbol++) {
+            symbolNames[symbol] = index.symbol(symbols[symbol]);
+        }
+        return new DfaTable(index, symbolNames,
+                Arrays.copyOf(dfa.transitions, dfa.states.size() * symbolCount),
+                dfa.states.toArray(new StateSet[0]), dfa.accepting);
+    }
 
-            // Check if the current state contains any final states
-            if (currentState.stream().anyMatch(automaton.finalStates()::contains)) {
-                dfaFinalStates.add(String.join(",", currentState));
+    private List<Chunk> expandParallel(int levelStart, int levelEnd, Construction dfa, int[] symbols,
+                                       TransitionIndex index, ExecutorService executor, int threads) {
+        int size = levelEnd - levelStart;
+        int chunkSize = Math.max(PARALLEL_MIN_LEVEL_SIZE / 4, (size + threads * 4 - 1) / (threads * 4));
+        List<Future<Chunk>> tasks = new ArrayList<>();
+        for (int from = levelStart; from < levelEnd; from += chunkSize) {
+            Chunk chunk = new Chunk(from, Math.min(levelEnd, from + chunkSize), symbols.length);
+            tasks.add(executor.submit(() -> chunk.expand(dfa, symbols, new Subsets(index))));
+        }
+        try {
+            List<Chunk> chunks = new ArrayList<>(tasks.size());
+            for (Future<Chunk> task : tasks) {
+                chunks.add(task.get());
+            }
+            return chunks;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Determinization interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
             }
+            throw new IllegalStateException("Determinization failed", e.getCause());
         }
+    }
 
-        // Convert DFA states and transitions to the required format
-        Set<String> dfaStateNames = new HashSet<>();
-        Set<Transition> dfaTransitionSet = new HashSet<>();
+    /**
+     * The DFA under construction: its subsets in id order, the id of every subset, and the table.
+     * <p>
+     * Only the calling thread modifies it. Workers read {@code states} and {@code ids} while the
+     * calling thread waits for them, which the concurrent map and the executor make safe.
+     */
+    private static final class Construction {
+        private final int symbolCount;
+        private final BitSet finalIds;
+        private final Map<StateSet, Integer> ids = new ConcurrentHashMap<>();
+        private final List<StateSet> states = new ArrayList<>();
+        private final BitSet accepting = new BitSet();
+        private int[] transitions;
 
-        for (Set<String> state : dfaStates) {
-            String stateName = String.join(",", state);
-            dfaStateNames.add(stateName);
+        Construction(int symbolCount, BitSet finalIds) {
+            this.symbolCount = symbolCount;
+            this.finalIds = finalIds;
+            this.transitions = new int[Math.max(symbolCount, 16)];
+        }
+
+        /**
+         * Looks up the id of a subset, numbering it if it is new.
+         */
+        int intern(StateSet subset) {
+            Integer known = ids.putIfAbsent(subset, states.size());
+            if (known != null) {
+                return known;
+            }
 
-            Map<String, Set<String>> transitions = dfaTransitions.get(state);
-            if (transitions != null) {
-                for (Map.Entry<String, Set<String>> entry : transitions.entrySet()) {
-                    String symbol = entry.getKey();
-                    String toState = String.join(",", entry.getValue());
-                    dfaTransitionSet.add(new Transition(stateName, toState, symbol));
+            int id = states.size();
+            states.add(subset);
+            for (int i = 0; i < subset.size(); i++) {
+                if (finalIds.get(subset.get(i))) {
+                    accepting.set(id);
+                    break;
                 }
             }
+            return id;
         }
 
-        return new Automaton(dfaStateNames, automaton.alphabet(), String.join(",", initialState), dfaFinalStates, dfaTransitionSet);
+        void setTransition(int state, int symbol, int target) {
+            int slot = state * symbolCount + symbol;
+            if (slot >= transitions.length) {
+                transitions = Arrays.copyOf(transitions, Math.max(slot + 1, transitions.length * 2));
+            }
+            transitions[slot] = target;
+        }
     }
 
-    private Set<String> epsilonClosure(Set<String> states, Automaton automaton) {
-        Set<String> closure = new HashSet<>(states);
-        Queue<String> queue = new LinkedList<>(states);
+    /**
+     * The moves of a range of states of one breadth-first level, computed by a worker.
+     * <p>
+     * Per (state, symbol) slot it holds the id of a known target, {@link DfaTable#NO_STATE}, or a
+     * reference to a subset that was not numbered yet. Equal new subsets of the chunk share one entry.
+     */
+    private static final class Chunk {
+        private final int start;
+        private final int end;
+        private final int symbolCount;
+        private final int[] targets;
+        private final List<StateSet> fresh = new ArrayList<>();
 
-        while (!queue.isEmpty()) {
-            String state = queue.poll();
-            for (Transition transition : automaton.transitions()) {
-                if (transition.fromState().equals(state) && transition.symbol().equals(Transition.EPSILON)) {
-                    if (closure.add(transition.toState())) {
-                        queue.add(transition.toState());
+        Chunk(int start, int end, int symbolCount) {
+            this.start = start;
+            this.end = end;
+            this.symbolCount = symbolCount;
+            this.targets = new int[(end - start) * symbolCount];
+        }
+
+        Chunk expand(Construction dfa, int[] symbols, Subsets subsets) {
+            Map<StateSet, Integer> freshIndex = new HashMap<>();
+            for (int current = start; current < end; current++) {
+                StateSet currentState = dfa.states.get(current);
+                for (int symbol = 0; symbol < symbolCount; symbol++) {
+                    int slot = (current - start) * symbolCount + symbol;
+                    StateSet move = subsets.move(currentState, symbols[symbol]);
+                    if (move.size() == 0) {
+                        targets[slot] = DfaTable.NO_STATE;
+                        continue;
+                    }
+                    Integer known = dfa.ids.get(move);
+                    if (known != null) {
+                        targets[slot] = known;
+                        continue;
+                    }
+                    Integer entry = freshIndex.putIfAbsent(move, fresh.size());
+                    if (entry == null) {
+                        entry = fresh.size();
+                        fresh.add(move);
                     }
+                    targets[slot] = freshReference(entry);
                 }
             }
+            return this;
         }
-        return closure;
-    }
 
-    private Set<String> move(Set<String> states, String symbol, Automaton automaton) {
-        Set<String> result = new HashSet<>();
-        for (String state : states) {
-            for (Transition transition : automaton.transitions()) {
-                if (transition.fromState().equals(state) && transition.symbol().equals(symbol)) {
-                    result.add(transition.toState());
+        /**
+         * Numbers the new subsets of the chunk in slot order and fills in its transitions.
+         */
+        void number(Construction dfa) {
+            int[] freshIds = new int[fresh.size()];
+            Arrays.fill(freshIds, DfaTable.NO_STATE);
+            for (int current = start; current < end; current++) {
+                for (int symbol = 0; symbol < symbolCount; symbol++) {
+                    int target = targets[(current - start) * symbolCount + symbol];
+                    if (target < DfaTable.NO_STATE) {
+                        int entry = freshReference(target);
+                        if (freshIds[entry] == DfaTable.NO_STATE) {
+                            freshIds[entry] = dfa.intern(fresh.get(entry));
+                        }
+                        target = freshIds[entry];
+                    }
+                    dfa.setTransition(current, symbol, target);
                 }
             }
         }
-        return result;
+
+        /**
+         * Encodes an index into {@code fresh} as a slot value below {@link DfaTable#NO_STATE}, and back.
+         */
+        private static int freshReference(int value) {
+            return -2 - value;
+        }
     }
 }
@@ -0,0 +1,132 @@
+package org.sergedb.fla.automata.processor;
+
+import org.sergedb.fla.automata.model.TransitionIndex;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.StringJoiner;
+
+/**
+ * The result of a subset construction as an int-indexed transition table.
+ * <p>
+ * DFA states are numbered 0 to {@link #stateCount()} - 1 in the order they were discovered, with the
+ * initial state at 0, and input symbols are numbered in sorted order without epsilon. The target of
+ * a state on a symbol is a single array read. Every DFA state remembers the set of NFA states it
+ * stands for, so a readable name is only built when {@link #stateName(int)} asks for it.
+ * <p>
+ * Instances are immutable and can be shared between threads.
+ */
+public final class DfaTable {
+    /**
+     * Target of a (state, symbol) pair without a transition, i.e. one that leads to the empty subset.
+     */
+    public static final int NO_STATE = -1;
+
+    private final TransitionIndex nfa;
+    private final String[] symbols;
+    private final int[] transitions;
+    private final StateSet[] subsets;
+    private final BitSet accepting;
+
+    DfaTable(TransitionIndex nfa, String[] symbols, int[] transitions, StateSet[] subsets, BitSet accepting) {
+        this.nfa = nfa;
+        this.symbols = symbols;
+        this.transitions = transitions;
+        this.subsets = subsets;
+        this.accepting = accepting;
+    }
+
+    /**
+     * Gets the number of DFA states.
+     *
+     * @return The number of states
+     */
+    public int stateCount() {
+        return subsets.length;
+    }
+
+    /**
+     * Gets the number of input symbols.
+     *
+     * @return The number of symbols, without epsilon
+     */
+    public int symbolCount() {
+        return symbols.length;
+    }
+
+    /**
+     * Gets the initial state.
+     *
+     * @return The id of the initial state, which is always 0
+     */
+    public int initialState() {
+        return 0;
+    }
+
+    /**
+     * Gets an input symbol by id.
+     *
+     * @param symbol The symbol id
+     * @return The symbol
+     */
+    public String symbol(int symbol) {
+        return symbols[symbol];
+    }
+
+    /**
+     * Gets the id of an input symbol.
+     *
+     * @param symbol The symbol
+     * @return The symbol id, or -1 if the symbol is not in the alphabet
+     */
+    public int symbolId(String symbol) {
+        int id = Arrays.binarySearch(symbols, symbol);
+        return id >= 0 ? id : -1;
+    }
+
+    /**
+     * Gets the target of a transition.
+     *
+     * @param state  The source state id
+     * @param symbol The symbol id
+     * @return The target state id, or {@link #NO_STATE} if there is no transition
+     */
+    public int transition(int state, int symbol) {
+        return transitions[state * symbols.length + symbol];
+    }
+
+    /**
+     * Checks if a state is final.
+     *
+     * @param state The state id
+     * @return True if the state contains a final NFA state
+     */
+    public boolean isAccepting(int state) {
+        return accepting.get(state);
+    }
+
+    /**
+     * Gets the NFA states a DFA state stands for.
+     *
+     * @param state The state id
+     * @return The NFA state ids, in ascending order
+     */
+    public int[] members(int state) {
+        return subsets[state].toArray();
+    }
+
+    /**
+     * Builds the name of a DFA state: its NFA states in sorted order, separated by commas.
+     *
+     * @param state The state id
+     * @return The state name
+     */
+    public String stateName(int state) {
+        StateSet subset = subsets[state];
+        StringJoiner name = new StringJoiner(",");
+        for (int i = 0; i < subset.size(); i++) {
+            name.add(nfa.stateName(subset.get(i)));
+        }
+        return name.toString();
+    }
+}
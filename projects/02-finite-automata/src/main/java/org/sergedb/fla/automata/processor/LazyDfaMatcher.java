@@ -0,0 +1,255 @@
+package org.sergedb.fla.automata.processor;
+
+import org.sergedb.fla.automata.model.Automaton;
+import org.sergedb.fla.automata.model.Transition;
+import org.sergedb.fla.automata.model.TransitionIndex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Checks whether inputs are accepted by an automaton, determinizing it lazily while matching.
+ * <p>
+ * The matcher simulates the automaton on sets of states, but every set it reaches becomes a cached
+ * DFA state, and every (state, symbol) step it computes becomes a cached transition. Inputs that
+ * follow paths already seen cost one table lookup per symbol, as with a full DFA, while the subset
+ * automaton is never built beyond the states the inputs actually reach.
+ * <p>
+ * The cache has a memory budget, estimated from the size of the cached subsets and transition rows.
+ * When a new state would exceed it, the cache is flushed and rebuilt on demand from the state the
+ * current input is in. Instances keep mutable caches and are not thread-safe, so every thread should
+ * use its own matcher.
+ */
+public final class LazyDfaMatcher {
+    /**
+     * Default memory budget of the state cache, in bytes.
+     */
+    public static final long DEFAULT_MEMORY_BUDGET = 8L << 20;
+
+    private static final int NO_SYMBOL = -1;
+    private static final int UNKNOWN = -1;
+    private static final int DEAD = 0;
+    // Rough cost of a cached state besides its members and transition row: the set, its array and map entry
+    private static final int STATE_OVERHEAD = 96;
+
+    private final TransitionIndex index;
+    private final Map<String, Integer> symbolIds = new HashMap<>();
+    private final int[] charSymbols;
+    private final int symbolCount;
+    private final int[] nfaSymbols;
+    private final BitSet finalIds;
+    private final long memoryBudget;
+    private final Subsets subsets;
+    private final StateSet startSet;
+
+    private final Map<StateSet, Integer> ids = new HashMap<>();
+    private final List<StateSet> sets = new ArrayList<>();
+    private final BitSet accepting = new BitSet();
+    private int[] transitions;
+    private int start;
+    private long memoryUsed;
+    private int flushes;
+
+    /**
+     * Creates a matcher with the default memory budget.
+     *
+     * @param automaton The automaton to match against
+     * @throws IllegalArgumentException If the initial state is neither in Q nor in any transition
+     */
+    public LazyDfaMatcher(Automaton automaton) {
+        this(automaton, DEFAULT_MEMORY_BUDGET);
+    }
+
+    /**
+     * Creates a matcher.
+     *
+     * @param automaton    The automaton to match against
+     * @param memoryBudget The approximate maximum size of the state cache, in bytes
+     * @throws IllegalArgumentException If memoryBudget is not positive or the initial state is unknown
+     */
+    public LazyDfaMatcher(Automaton automaton, long memoryBudget) {
+        Objects.requireNonNull(automaton, "Automaton cannot be null");
+        if (memoryBudget <= 0) {
+            throw new IllegalArgumentException("Memory budget must be positive");
+        }
+        this.index = automaton.index();
+        this.memoryBudget = memoryBudget;
+        this.subsets = new Subsets(index);
+
+        // Input symbols in sorted order, without epsilon
+        this.nfaSymbols = automaton.alphabet().stream()
+                .filter(symbol -> !symbol.equals(Transition.EPSILON))
+                .mapToInt(index::symbolId)
+                .sorted()
+                .toArray();
+        this.symbolCount = nfaSymbols.length;
+        int maxChar = -1;
+        for (int symbol = 0; symbol < symbolCount; symbol++) {
+            String name = index.symbol(nfaSymbols[symbol]);
+            symbolIds.put(name, symbol);
+            if (name.length() == 1) {
+                maxChar = Math.max(maxChar, name.charAt(0));
+            }
+        }
+        this.charSymbols = new int[maxChar + 1];
+        Arrays.fill(charSymbols, NO_SYMBOL);
+        symbolIds.forEach((name, symbol) -> {
+            if (name.length() == 1) {
+                charSymbols[name.charAt(0)] = symbol;
+            }
+        });
+
+        this.finalIds = AutomatonProcessor.finalStateIds(automaton);
+        this.startSet = subsets.closure(AutomatonProcessor.initialStateId(automaton));
+        resetCache();
+    }
+
+    /**
+     * Checks whether the automaton accepts a string whose symbols are single characters.
+     *
+     * @param input The input, one symbol per character
+     * @return True if the input is accepted
+     */
+    public boolean accepts(CharSequence input) {
+        Objects.requireNonNull(input, "Input cannot be null");
+        int state = start;
+        for (int i = 0, n = input.length(); i < n; i++) {
+            char c = input.charAt(i);
+            int symbol = c < charSymbols.length ? charSymbols[c] : NO_SYMBOL;
+            state = step(state, symbol);
+            if (state == DEAD) {
+                return false;
+            }
+        }
+        return accepting.get(state);
+    }
+
+    /**
+     * Checks whether the automaton accepts a sequence of symbols.
+     *
+     * @param input The input symbols
+     * @return True if the input is accepted
+     */
+    public boolean accepts(List<String> input) {
+        Objects.requireNonNull(input, "Input cannot be null");
+        int state = start;
+        for (String name : input) {
+            state = step(state, symbolIds.getOrDefault(name, NO_SYMBOL));
+            if (state == DEAD) {
+                return false;
+            }
+        }
+        return accepting.get(state);
+    }
+
+    /**
+     * Gets the number of DFA states currently cached, including the dead state.
+     *
+     * @return The number of cached states
+     */
+    public int getCachedStateCount() {
+        return sets.size();
+    }
+
+    /**
+     * Gets the estimated size of the state cache.
+     *
+     * @return The estimated number of bytes used by the cached states
+     */
+    public long getMemoryUsed() {
+        return memoryUsed;
+    }
+
+    /**
+     * Gets how many times the cache was flushed because it reached its memory budget.
+     *
+     * @return The number of flushes
+     */
+    public int getFlushCount() {
+        return flushes;
+    }
+
+    private int step(int state, int symbol) {
+        if (symbol == NO_SYMBOL) {
+            return DEAD;
+        }
+        int next = transitions[state * symbolCount + symbol];
+        return next != UNKNOWN ? next : expand(state, symbol);
+    }
+
+    /**
+     * Computes the transition of a cached state on a symbol, flushing the cache first if the target
+     * is new and does not fit in the budget.
+     *
+     * @param state  The source state
+     * @param symbol The symbol id
+     * @return The target state, valid in the possibly flushed cache
+     */
+    private int expand(int state, int symbol) {
+        StateSet source = sets.get(state);
+        StateSet move = subsets.move(source, nfaSymbols[symbol]);
+        if (!ids.containsKey(move) && memoryUsed + cost(move) > memoryBudget) {
+            resetCache();
+            flushes++;
+            state = intern(source);
+        }
+
+        int target = intern(move);
+        transitions[state * symbolCount + symbol] = target;
+        return target;
+    }
+
+    /**
+     * Looks up a DFA state, creating it if it is new.
+     *
+     * @param set The NFA states it stands for
+     * @return The DFA state id
+     */
+    private int intern(StateSet set) {
+        Integer id = ids.get(set);
+        if (id != null) {
+            return id;
+        }
+
+        id = sets.size();
+        ids.put(set, id);
+        sets.add(set);
+        memoryUsed += cost(set);
+        for (int i = 0; i < set.size(); i++) {
+            if (finalIds.get(set.get(i))) {
+                accepting.set(id);
+                break;
+            }
+        }
+
+        int required = sets.size() * symbolCount;
+        if (transitions.length < required) {
+            int grown = Math.max(required, transitions.length * 2);
+            int oldLength = transitions.length;
+            transitions = Arrays.copyOf(transitions, grown);
+            Arrays.fill(transitions, oldLength, grown, UNKNOWN);
+        }
+        return id;
+    }
+
+    private long cost(StateSet set) {
+        return STATE_OVERHEAD + 4L * set.size() + 4L * symbolCount;
+    }
+
+    private void resetCache() {
+        ids.clear();
+        sets.clear();
+        accepting.clear();
+        transitions = new int[0];
+        memoryUsed = 0;
+        intern(new StateSet(new int[0]));
+        // The dead state never leaves itself
+        Arrays.fill(transitions, 0, symbolCount, DEAD);
+        start = intern(startSet);
+    }
+}
@@ -0,0 +1,62 @@
+package org.sergedb.fla.automata.processor;
+
+import java.util.Arrays;
+
+/**
+ * An immutable set of NFA state ids, used as the key of a DFA state during subset construction.
+ * <p>
+ * The members are kept as a sorted int array, so two sets are equal exactly when their arrays are,
+ * and the hash code is computed once when the set is created instead of at every lookup.
+ */
+final class StateSet {
+    private final int[] members;
+    private final int hash;
+
+    /**
+     * Creates a set from sorted, distinct state ids.
+     *
+     * @param members The state ids in ascending order; the array is not copied
+     */
+    StateSet(int[] members) {
+        this.members = members;
+        this.hash = Arrays.hashCode(members);
+    }
+
+    /**
+     * Gets the number of states in the set.
+     *
+     * @return The size of the set
+     */
+    int size() {
+        return members.length;
+    }
+
+    /**
+     * Gets a member by position.
+     *
+     * @param position A position between 0 and {@link #size()}
+     * @return The state id at that position, in ascending order
+     */
+    int get(int position) {
+        return members[position];
+    }
+
+    /**
+     * Copies the members of the set.
+     *
+     * @return The state ids in ascending order
+     */
+    int[] toArray() {
+        return members.clone();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof StateSet other && hash == other.hash && Arrays.equals(members, other.members);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
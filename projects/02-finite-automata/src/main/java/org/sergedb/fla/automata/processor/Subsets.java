@@ -0,0 +1,102 @@
+package org.sergedb.fla.automata.processor;
+
+import org.sergedb.fla.automata.model.TransitionIndex;
+
+import java.util.Arrays;
+
+/**
+ * Scratch space for computing moves and epsilon-closures over a {@link TransitionIndex}.
+ * <p>
+ * One buffer of state ids is reused for every step, and visited states are marked with a generation
+ * stamp instead of clearing a set, so a step only allocates the resulting {@link StateSet}.
+ * Instances are not thread-safe; every thread needs its own.
+ */
+final class Subsets {
+    private final TransitionIndex index;
+    private final int epsilon;
+    private final int[] buffer;
+    private final int[] stamps;
+    private int generation;
+
+    Subsets(TransitionIndex index) {
+        this(index, 0);
+    }
+
+    /**
+     * Creates scratch space whose generation counter starts at the given value, so that tests can
+     * bring the counter close to wrapping around.
+     *
+     * @param index      The transition index to follow
+     * @param generation The generation before the first step
+     */
+    Subsets(TransitionIndex index, int generation) {
+        this.index = index;
+        this.epsilon = index.epsilonSymbol();
+        this.buffer = new int[index.stateCount()];
+        this.stamps = new int[index.stateCount()];
+        this.generation = generation;
+    }
+
+    /**
+     * Computes the epsilon-closure of a single state.
+     *
+     * @param state The state id
+     * @return The states reachable from it by epsilon transitions, including itself
+     */
+    StateSet closure(int state) {
+        nextGeneration();
+        int size = add(state, 0);
+        return finish(size);
+    }
+
+    /**
+     * Computes the epsilon-closure of the targets of a set of states on a symbol.
+     *
+     * @param states The source states
+     * @param symbol The symbol id
+     * @return The target states, empty if no state has a transition on the symbol
+     */
+    StateSet move(StateSet states, int symbol) {
+        nextGeneration();
+        int size = 0;
+        for (int i = 0; i < states.size(); i++) {
+            int state = states.get(i);
+            for (int t = index.targetsStart(state, symbol); t < index.targetsEnd(state, symbol); t++) {
+                size = add(index.target(t), size);
+            }
+        }
+        return finish(size);
+    }
+
+    /**
+     * Starts a new step. When the counter wraps around, the stamps are cleared, since they could
+     * otherwise match the recycled generation and make unvisited states look visited.
+     */
+    private void nextGeneration() {
+        if (++generation == 0) {
+            Arrays.fill(stamps, 0);
+            generation = 1;
+        }
+    }
+
+    private int add(int state, int size) {
+        if (stamps[state] != generation) {
+            stamps[state] = generation;
+            buffer[size++] = state;
+        }
+        return size;
+    }
+
+    private StateSet finish(int size) {
+        // The buffer grows while it is scanned, which visits the whole epsilon-closure
+        for (int i = 0; epsilon >= 0 && i < size; i++) {
+            int state = buffer[i];
+            for (int t = index.targetsStart(state, epsilon); t < index.targetsEnd(state, epsilon); t++) {
+                size = add(index.target(t), size);
+            }
+        }
+        int[] members = Arrays.copyOf(buffer, size);
+        Arrays.sort(members);
+        return new StateSet(members);
+    }
+}
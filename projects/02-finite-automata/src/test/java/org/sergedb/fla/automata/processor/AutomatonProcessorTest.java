@@ -0,0 +1,279 @@
+package org.sergedb.fla.automata.processor;
+
+import org.junit.Test;
+import org.sergedb.fla.automata.model.Automaton;
+import org.sergedb.fla.automata.model.DeterminismReport;
+import org.sergedb.fla.automata.model.Transition;
+import org.sergedb.fla.automata.parser.AutomatonParser;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class AutomatonProcessorTest {
+
+    private final AutomatonParser parser = new AutomatonParser();
+    private final AutomatonProcessor processor = new AutomatonProcessor();
+
+    private final Automaton nfa = parser.parseFromString("""
+            Q = {q0,q1,q2}
+            ∑ = {a,b,c}
+            F = {q2}
+            delta = {
+                (q0,a) = q0,
+                (q0,b) = q1,
+                (q1,c) = q1,
+                (q1,c) = q2,
+                (q2,a) = q0,
+                (q1,a) = q1
+            }
+            """);
+
+    @Test
+    public void testIndexedTransitions() {
+        assertEquals(Set.of("q1", "q2"), nfa.getTransitions("q1", "c"));
+        assertEquals(Set.of("q0"), nfa.getTransitions("q0", "a"));
+        assertTrue(nfa.getTransitions("q2", "b").isEmpty());
+        assertTrue(nfa.getTransitions("unknown", "a").isEmpty());
+        assertFalse(nfa.isDeterministic());
+
+        // The index is derived data and does not take part in equality
+        Automaton copy = new Automaton(nfa.states(), nfa.alphabet(), nfa.initialState(),
+                nfa.finalStates(), new HashSet<>(nfa.transitions()));
+        assertEquals(nfa, copy);
+        assertEquals(nfa.hashCode(), copy.hashCode());
+
+        // The inputs are copied, so later changes cannot leave the index stale
+        Set<Transition> transitions = new HashSet<>(nfa.transitions());
+        Automaton snapshot = new Automaton(nfa.states(), nfa.alphabet(), nfa.initialState(),
+                nfa.finalStates(), transitions);
+        transitions.add(new Transition("q2", "q2", "b"));
+        assertEquals(nfa, snapshot);
+        assertTrue(snapshot.getTransitions("q2", "b").isEmpty());
+
+        // Without an index one is built from the copied sets
+        Automaton built = new Automaton(nfa.states(), nfa.alphabet(), nfa.initialState(),
+                nfa.finalStates(), nfa.transitions(), null);
+        assertEquals(Set.of("q1", "q2"), built.getTransitions("q1", "c"));
+
+        // An index that does not describe the transitions is rejected
+        assertThrows(IllegalArgumentException.class, () -> new Automaton(nfa.states(), nfa.alphabet(),
+                nfa.initialState(), nfa.finalStates(), transitions, nfa.index()));
+    }
+
+    @Test
+    public void testDeterminismReport() {
+        DeterminismReport report = nfa.determinismReport();
+        assertEquals(List.of(new DeterminismReport.Pair("q0", "c"), new DeterminismReport.Pair("q1", "b"),
+                new DeterminismReport.Pair("q2", "b"), new DeterminismReport.Pair("q2", "c")), report.missing());
+        assertEquals(List.of(new DeterminismReport.Pair("q1", "c")), report.duplicated());
+        assertEquals(0, report.epsilonTransitions());
+        assertFalse(report.isPartiallyDeterministic());
+        assertFalse(report.isDeterministic());
+
+        // Subset construction leaves out the dead state, so the result is deterministic but partial
+        DeterminismReport dfaReport = processor.convertToDFA(nfa).determinismReport();
+        assertTrue(dfaReport.isPartiallyDeterministic());
+        assertFalse(dfaReport.isComplete());
+        assertTrue(dfaReport.duplicated().isEmpty());
+    }
+
+    @Test
+    public void testConvertToDFA() {
+        Automaton dfa = processor.convertToDFA(nfa);
+
+        assertEquals(Set.of("q0", "q1", "q1,q2", "q0,q1"), dfa.states());
+        assertEquals("q0", dfa.initialState());
+        assertEquals(Set.of("q1,q2"), dfa.finalStates());
+        assertEquals(Set.of("q1,q2"), dfa.getTransitions("q1", "c"));
+        assertEquals(Set.of("q0,q1"), dfa.getTransitions("q1,q2", "a"));
+        assertEquals(Set.of("q1,q2"), dfa.getTransitions("q1,q2", "c"));
+        assertEquals(Set.of("q1"), dfa.getTransitions("q0,q1", "b"));
+        assertEquals(9, dfa.transitions().size());
+    }
+
+    @Test
+    public void testConvertToDFAWithUnknownStates() {
+        // Built in code, so nothing checks that the initial and final states are in Q
+        Set<Transition> transitions = Set.of(new Transition("q0", "q1", "a"));
+        Automaton ghostFinal = new Automaton(Set.of("q0", "q1"), Set.of("a"), "q0",
+                Set.of("q1", "ghost"), transitions);
+        Automaton dfa = processor.convertToDFA(ghostFinal);
+        assertEquals(Set.of("q1"), dfa.finalStates());
+        assertEquals(Set.of("q1"), dfa.getTransitions("q0", "a"));
+
+        Automaton ghostInitial = new Automaton(Set.of("q0", "q1"), Set.of("a"), "ghost",
+                Set.of("q1"), transitions);
+        assertThrows(IllegalArgumentException.class, () -> processor.convertToDFA(ghostInitial));
+    }
+
+    @Test
+    public void testDeterminizeTable() {
+        DfaTable table = processor.determinize(nfa);
+
+        assertEquals(4, table.stateCount());
+        assertEquals(3, table.symbolCount());
+        assertEquals("q0", table.stateName(table.initialState()));
+        int c = table.symbolId("c");
+        assertEquals(DfaTable.NO_STATE, table.transition(0, c));
+        assertEquals(-1, table.symbolId("d"));
+
+        int q1 = table.transition(0, table.symbolId("b"));
+        int q1q2 = table.transition(q1, c);
+        assertArrayEquals(new int[]{1, 2}, table.members(q1q2));
+        assertEquals("q1,q2", table.stateName(q1q2));
+        assertTrue(table.isAccepting(q1q2));
+        assertFalse(table.isAccepting(q1));
+    }
+
+    @Test
+    public void testDeterminizeExponentialBlowUp() {
+        int n = 12;
+        DfaTable table = processor.determinize(nthSymbolFromEnd(n, 0));
+        assertEquals(1 << n, table.stateCount());
+        for (int state = 0; state < table.stateCount(); state++) {
+            for (int symbol = 0; symbol < table.symbolCount(); symbol++) {
+                assertNotEquals(DfaTable.NO_STATE, table.transition(state, symbol));
+            }
+        }
+    }
+
+    @Test
+    public void testParallelDeterminizeIsReproducible() {
+        // Unreachable padding states lift the automaton above the parallel threshold
+        Automaton automaton = nthSymbolFromEnd(14, AutomatonProcessor.PARALLEL_MIN_NFA_STATES);
+        DfaTable sequential = processor.determinize(automaton);
+        DfaTable parallel = processor.determinize(automaton, 4);
+
+        assertEquals(1 << 14, parallel.stateCount());
+        assertEquals(sequential.stateCount(), parallel.stateCount());
+        for (int state = 0; state < sequential.stateCount(); state++) {
+            assertArrayEquals(sequential.members(state), parallel.members(state));
+            assertEquals(sequential.isAccepting(state), parallel.isAccepting(state));
+            for (int symbol = 0; symbol < sequential.symbolCount(); symbol++) {
+                assertEquals(sequential.transition(state, symbol), parallel.transition(state, symbol));
+            }
+        }
+        assertThrows(IllegalArgumentException.class, () -> processor.determinize(automaton, 0));
+    }
+
+    @Test
+    public void testLazyDfaMatcher() {
+        LazyDfaMatcher matcher = new LazyDfaMatcher(nfa);
+        assertTrue(matcher.accepts("bc"));
+        assertTrue(matcher.accepts("abaccac"));
+        assertFalse(matcher.accepts("bca"));
+        assertFalse(matcher.accepts("bd"));
+        assertTrue(matcher.accepts(List.of("a", "b", "c")));
+        assertFalse(matcher.accepts(List.of("b", "cc")));
+        assertFalse(matcher.accepts(""));
+        // Only the reached subsets are cached: dead, {q0}, {q1}, {q1,q2} and {q0,q1}
+        assertEquals(5, matcher.getCachedStateCount());
+    }
+
+    @Test
+    public void testLazyDfaMatcherFlushesAtBudget() {
+        int n = 10;
+        Automaton automaton = nthSymbolFromEnd(n, 0);
+        LazyDfaMatcher unbounded = new LazyDfaMatcher(automaton);
+        LazyDfaMatcher bounded = new LazyDfaMatcher(automaton, 2048);
+
+        Random random = new Random(42);
+        for (int i = 0; i < 2000; i++) {
+            char[] input = new char[random.nextInt(30)];
+            for (int j = 0; j < input.length; j++) {
+                input[j] = random.nextBoolean() ? 'a' : 'b';
+            }
+            boolean expected = input.length >= n && input[input.length - n] == 'a';
+            assertEquals(expected, unbounded.accepts(new String(input)));
+            assertEquals(expected, bounded.accepts(new String(input)));
+        }
+
+        assertEquals(0, unbounded.getFlushCount());
+        assertTrue(bounded.getFlushCount() > 0);
+        assertTrue(bounded.getMemoryUsed() <= 2048);
+        assertThrows(IllegalArgumentException.class, () -> new LazyDfaMatcher(automaton, 0));
+    }
+
+    @Test
+    public void testLazyDfaMatcherWithUnknownStates() {
+        Set<Transition> transitions = Set.of(new Transition("q0", "q1", "a"));
+        LazyDfaMatcher matcher = new LazyDfaMatcher(new Automaton(Set.of("q0", "q1"), Set.of("a"), "q0",
+                Set.of("q1", "ghost"), transitions));
+        assertTrue(matcher.accepts("a"));
+        assertFalse(matcher.accepts("aa"));
+
+        assertThrows(IllegalArgumentException.class, () -> new LazyDfaMatcher(new Automaton(Set.of("q0", "q1"),
+                Set.of("a"), "ghost", Set.of("q1"), transitions)));
+    }
+
+    @Test
+    public void testSubsetsGenerationWrapAround() {
+        int q0 = nfa.index().stateId("q0");
+        int b = nfa.index().symbolId("b");
+        int c = nfa.index().symbolId("c");
+
+        // The third step wraps the counter to 0, the stamp of states that were never visited
+        Subsets subsets = new Subsets(nfa.index(), -3);
+        StateSet q1 = subsets.move(subsets.closure(q0), b);
+        StateSet q1q2 = subsets.move(q1, c);
+        assertArrayEquals(new int[]{nfa.index().stateId("q1"), nfa.index().stateId("q2")}, q1q2.toArray());
+
+        // Steps after the wrap see only their own stamps
+        assertArrayEquals(new int[]{q0}, subsets.closure(q0).toArray());
+        assertArrayEquals(q1q2.toArray(), subsets.move(q1, c).toArray());
+    }
+
+    /**
+     * Builds an NFA for the strings over {a,b} whose n-th symbol from the end is an 'a'.
+     * The DFA has to remember the last n symbols, so it has 2^n states.
+     */
+    private Automaton nthSymbolFromEnd(int n, int padding) {
+        StringBuilder definition = new StringBuilder("Q = {");
+        for (int i = 0; i <= n; i++) {
+            definition.append(i == 0 ? "" : ",").append("s").append(i);
+        }
+        for (int i = 0; i < padding; i++) {
+            definition.append(",p").append(i);
+        }
+        definition.append("}\n∑ = {a,b}\nF = {s").append(n).append("}\ndelta = {\n");
+        definition.append("(s0,a) = s0,\n(s0,b) = s0,\n(s0,a) = s1");
+        for (int i = 1; i < n; i++) {
+            definition.append(",\n(s").append(i).append(",a) = s").append(i + 1);
+            definition.append(",\n(s").append(i).append(",b) = s").append(i + 1);
+        }
+        for (int i = 0; i < padding; i++) {
+            definition.append(",\n(p").append(i).append(",a) = p").append(i);
+        }
+        definition.append("\n}\n");
+        return parser.parseFromString(definition.toString());
+    }
+
+    @Test
+    public void testConvertToDFAWithEpsilonTransitions() {
+        Automaton withEpsilon = parser.parseFromString("""
+                Q = {q0,q1,q2}
+                ∑ = {a,b}
+                F = {q2}
+                delta = {
+                    (q0,ε) = q1,
+                    (q1,a) = q2,
+                    (q1,b) = q1,
+                    (q2,ε) = q0
+                }
+                """);
+        assertEquals(2, withEpsilon.determinismReport().epsilonTransitions());
+        assertFalse(withEpsilon.isDeterministic());
+
+        Automaton dfa = processor.convertToDFA(withEpsilon);
+
+        assertEquals("q0,q1", dfa.initialState());
+        assertEquals(Set.of("q0,q1,q2"), dfa.getTransitions("q0,q1", "a"));
+        assertEquals(Set.of("q1"), dfa.getTransitions("q0,q1", "b"));
+        assertTrue(dfa.finalStates().contains("q0,q1,q2"));
+        assertTrue(dfa.isDeterministic());
+    }
+}